@@ -0,0 +1,99 @@
+package com.labirinto.app.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.labirinto.app.App;
+
+/**
+ * The application as the benchmarks run it: no web server unless asked for,
+ * no startup import, database and photo store in a temporary directory.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final Path dataDir;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(Path dataDir, ConfigurableApplicationContext context) {
+        this.dataDir = dataDir;
+        this.context = context;
+    }
+
+    /**
+     * Starts on a file database with the given Spring profiles.
+     */
+    static BenchmarkApplication onFileDatabase(String... profiles) {
+        Path dataDir = createDataDir();
+        return start(dataDir, profiles, WebApplicationType.NONE, "--app.db.path=" + dataDir.resolve("db"));
+    }
+
+    /**
+     * Starts on a private in-memory database, without SQL echo.
+     */
+    static BenchmarkApplication inMemory() {
+        return inMemory(WebApplicationType.NONE);
+    }
+
+    /**
+     * Same as {@link #inMemory()}, plus the web server on a random port and
+     * the given settings ({@code --name=value}).
+     */
+    static BenchmarkApplication withWebServer(String... settings) {
+        return inMemory(WebApplicationType.SERVLET,
+                Stream.concat(Stream.of("--server.port=0"), Stream.of(settings)).toArray(String[]::new));
+    }
+
+    private static BenchmarkApplication inMemory(WebApplicationType webApplicationType, String... settings) {
+        Path dataDir = createDataDir();
+        return start(dataDir, new String[0], webApplicationType, Stream.concat(Stream.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + dataDir.getFileName() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false"), Stream.of(settings)).toArray(String[]::new));
+    }
+
+    int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // Settings go in as command line arguments so they win over application*.properties
+    private static BenchmarkApplication start(Path dataDir, String[] profiles,
+            WebApplicationType webApplicationType, String... settings) {
+        String[] args = Stream.concat(
+                Stream.of("--app.init.enabled=false", "--app.storage.path=" + dataDir.resolve("photos"),
+                        "--app.derivatives.path=" + dataDir.resolve("derivatives")),
+                Stream.of(settings)).toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(App.class)
+                .web(webApplicationType)
+                .profiles(profiles)
+                .run(args);
+        return new BenchmarkApplication(dataDir, context);
+    }
+
+    private static Path createDataDir() {
+        try {
+            return Files.createTempDirectory("labirinto-benchmark");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
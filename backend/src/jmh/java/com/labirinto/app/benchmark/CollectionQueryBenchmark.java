@@ -0,0 +1,101 @@
+package com.labirinto.app.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.entities.User;
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.repository.UserPhotoRepository;
+import com.labirinto.app.repository.UserRepository;
+import com.labirinto.app.service.PhotoCollectionIndex;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.service.PhotoService.PreparedPhoto;
+
+/**
+ * Picking an uncollected photo from the in-memory {@link PhotoCollectionIndex}
+ * while the client-side exclusion list grows, as the random photo endpoints
+ * do. The user has collected half of the photos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectionQueryBenchmark {
+
+    private static final int PHOTOS = 20_000;
+    private static final int INSERT_BATCH = 100;
+    private static final int COLLECT_BATCH = 1_000;
+
+    @Param({ "0", "10", "100", "1000" })
+    public int excluded;
+
+    private BenchmarkApplication application;
+    private UserPhotoRepository userPhotoRepository;
+    private PhotoCollectionIndex photoCollectionIndex;
+    private Long userId;
+    private List<Long> excludedPhotoIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.inMemory();
+        PhotoService photoService = application.getBean(PhotoService.class);
+        userPhotoRepository = application.getBean(UserPhotoRepository.class);
+        photoCollectionIndex = application.getBean(PhotoCollectionIndex.class);
+
+        for (int seeded = 0; seeded < PHOTOS; seeded += INSERT_BATCH) {
+            List<PreparedPhoto> batch = new ArrayList<>(INSERT_BATCH);
+            for (int i = 0; i < INSERT_BATCH; i++) {
+                batch.add(new PreparedPhoto(
+                        new Photo(null, "#808080", null, 640, 480, PhotoStatus.READY, null, null, null, null), Map.of()));
+            }
+            photoService.saveAll(batch);
+        }
+        userId = application.getBean(UserRepository.class).save(new User(null, "benchmark")).getId();
+
+        List<Long> photoIds = new ArrayList<>(application.getBean(PhotoRepository.class).findAllIds());
+        Collections.shuffle(photoIds, new Random(42));
+        List<Long> collected = photoIds.subList(0, photoIds.size() / 2);
+        for (int from = 0; from < collected.size(); from += COLLECT_BATCH) {
+            userPhotoRepository.insertAllIfAbsent(collected.subList(from, Math.min(collected.size(), from + COLLECT_BATCH))
+                    .stream().map(photoId -> new UserPhotoId(userId, photoId)).toList());
+        }
+        excludedPhotoIds = excluded == 0 ? null
+                : List.copyOf(photoIds.subList(photoIds.size() / 2, photoIds.size() / 2 + excluded));
+        photoCollectionIndex.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public Optional<Long> pickUncollectedFromIndex() {
+        return photoCollectionIndex.pickUncollected(userId, excludedPhotoIds);
+    }
+}
@@ -0,0 +1,72 @@
+package com.labirinto.app.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.labirinto.app.util.ColorExtractor;
+import com.labirinto.app.util.ColorExtractor.ColorAnalysis;
+
+/**
+ * Representative color extraction over images of different sizes and
+ * formats, from the encoded bytes (what an upload costs, decoding included)
+ * and from an already decoded image (the histogram alone). {@code analyze}
+ * adds the five-color palette computed at ingest to the latter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColorExtractorBenchmark {
+
+    @Param({ "640x480", "1920x1080", "4032x3024" })
+    public String size;
+
+    @Param({ "jpg", "png" })
+    public String format;
+
+    @Param({ "ACCURATE", "BALANCED", "FAST" })
+    public ColorExtractor.Mode mode;
+
+    private byte[] encoded;
+    private BufferedImage decoded;
+
+    @Setup
+    public void createImage() throws IOException {
+        String[] dimensions = size.split("x");
+        encoded = Corpus.image(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), format, 42);
+        decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public String fromBytes() {
+        return ColorExtractor.extractRepresentativeColor(encoded, mode);
+    }
+
+    @Benchmark
+    public String fromDecodedImage() {
+        return ColorExtractor.extractRepresentativeColor(decoded, mode);
+    }
+
+    @Benchmark
+    public ColorAnalysis analyze() {
+        return ColorExtractor.analyze(decoded, mode, 5);
+    }
+}
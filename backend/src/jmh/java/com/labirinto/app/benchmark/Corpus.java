@@ -0,0 +1,107 @@
+package com.labirinto.app.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import com.labirinto.app.entities.Poem;
+
+/**
+ * Deterministic synthetic data for the benchmarks.
+ */
+final class Corpus {
+
+    // Frequent words first: poems draw from the vocabulary with a Zipf-like
+    // distribution, so these have long posting lists and the tail short ones
+    private static final String[] COMMON_WORDS = { "amore", "cuore", "notte", "cielo", "mare", "luce", "vento",
+            "sole", "stelle", "terra", "tempo", "sogno", "silenzio", "ombra", "voce", "mano", "occhi", "fiore",
+            "pioggia", "inverno", "primavera", "lontano", "dolce", "morte", "vita", "anima", "memoria", "strada",
+            "casa", "foglie", "luna", "onda", "sera", "mattino", "nebbia", "fuoco", "neve", "campane", "giardino" };
+    private static final String[] SYLLABLES = { "ra", "ma", "lo", "ti", "ne", "so", "gli", "ve", "ca", "fu",
+            "de", "pi", "sta", "mo", "ri", "ze", "bo", "chia", "tro", "lu" };
+    private static final int VOCABULARY_SIZE = 3_000;
+
+    private Corpus() {
+    }
+
+    static List<Poem> poems(int count, long seed) {
+        Random random = new Random(seed);
+        String[] vocabulary = vocabulary(random);
+        List<Poem> poems = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = words(vocabulary, random, 2 + random.nextInt(4));
+            StringBuilder text = new StringBuilder();
+            int lines = 8 + random.nextInt(30);
+            for (int line = 0; line < lines; line++) {
+                text.append(words(vocabulary, random, 4 + random.nextInt(6))).append('\n');
+            }
+            poems.add(new Poem(null, title, text.toString()));
+        }
+        return poems;
+    }
+
+    /**
+     * A photo-like image (smooth gradients, a few colored areas, grain)
+     * encoded in the given ImageIO format.
+     */
+    static byte[] image(int width, int height, String format, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] blobs = new int[12];
+        for (int i = 0; i < blobs.length; i++) {
+            blobs[i] = random.nextInt(0x1000000);
+        }
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int blob = blobs[(x * 4 / width) + 4 * (y * 3 / height)];
+                int shade = (int) (40 * Math.sin(x / 37.0) * Math.cos(y / 53.0)) + random.nextInt(16) - 8;
+                row[x] = (channel(blob >> 16, shade) << 16) | (channel(blob >> 8, shade) << 8) | channel(blob, shade);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (!ImageIO.write(image, format, out)) {
+                throw new IllegalArgumentException("No ImageIO writer for " + format);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static int channel(int value, int shade) {
+        return Math.max(0, Math.min(255, (value & 0xFF) + shade));
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        System.arraycopy(COMMON_WORDS, 0, vocabulary, 0, COMMON_WORDS.length);
+        for (int i = COMMON_WORDS.length; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        return vocabulary;
+    }
+
+    private static String words(String[] vocabulary, Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            // Cubing a uniform value skews the draws towards the head
+            double skewed = random.nextDouble();
+            int index = (int) (skewed * skewed * skewed * vocabulary.length);
+            words.append(i == 0 ? "" : " ").append(vocabulary[index]);
+        }
+        return words.toString();
+    }
+}
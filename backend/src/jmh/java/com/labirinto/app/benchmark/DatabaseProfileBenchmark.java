@@ -0,0 +1,127 @@
+package com.labirinto.app.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Limit;
+
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.entities.User;
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.repository.UserPhotoRepository;
+import com.labirinto.app.repository.UserRepository;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.service.PhotoService.PreparedPhoto;
+
+/**
+ * Database throughput with the default settings and with the prod profile
+ * (fixed Hikari pool, H2 cache and page size, no SQL echo, update batching).
+ * <p>
+ * Every trial starts the application without web server and without the
+ * startup import on a fresh file database, seeded with photos and users, and
+ * hits it from more threads than the default pool has connections.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class DatabaseProfileBenchmark {
+
+    private static final int PHOTOS = 5_000;
+    private static final int USERS = 100;
+    private static final int PAGE_SIZE = 100;
+    private static final int INSERT_BATCH = 25;
+    private static final int COLLECT_BATCH = 10;
+
+    @Param({ "default", "prod" })
+    public String profile;
+
+    private BenchmarkApplication application;
+    private PhotoRepository photoRepository;
+    private PhotoService photoService;
+    private UserPhotoRepository userPhotoRepository;
+    private long[] photoIds;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = "default".equals(profile) ? BenchmarkApplication.onFileDatabase()
+                : BenchmarkApplication.onFileDatabase(profile);
+        photoRepository = application.getBean(PhotoRepository.class);
+        photoService = application.getBean(PhotoService.class);
+        userPhotoRepository = application.getBean(UserPhotoRepository.class);
+
+        for (int seeded = 0; seeded < PHOTOS; seeded += INSERT_BATCH) {
+            photoService.saveAll(newPhotos(INSERT_BATCH));
+        }
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User(null, "benchmark-" + i));
+        }
+        UserRepository userRepository = application.getBean(UserRepository.class);
+        userIds = userRepository.saveAll(users).stream().mapToLong(User::getId).toArray();
+        photoIds = photoRepository.findAllIds().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public List<PhotoSummary> readPhotoPage() {
+        long after = photoIds[ThreadLocalRandom.current().nextInt(photoIds.length)];
+        return photoRepository.findSummariesAfter(after, Limit.of(PAGE_SIZE));
+    }
+
+    @Benchmark
+    public void insertPhotos() {
+        photoService.saveAll(newPhotos(INSERT_BATCH));
+    }
+
+    @Benchmark
+    public void collectPhotos() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = userIds[random.nextInt(userIds.length)];
+        List<UserPhotoId> ids = new ArrayList<>(COLLECT_BATCH);
+        for (int i = 0; i < COLLECT_BATCH; i++) {
+            ids.add(new UserPhotoId(userId, photoIds[random.nextInt(photoIds.length)]));
+        }
+        userPhotoRepository.insertAllIfAbsent(ids);
+    }
+
+    private static List<PreparedPhoto> newPhotos(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<PreparedPhoto> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Photo photo = new Photo(null, String.format("#%06X", random.nextInt(0x1000000)),
+                    null, 640, 480, PhotoStatus.READY, random.nextLong(), null, null, null);
+            batch.add(new PreparedPhoto(photo, Map.of()));
+        }
+        return batch;
+    }
+}
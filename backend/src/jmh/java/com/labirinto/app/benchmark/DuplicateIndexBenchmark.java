@@ -0,0 +1,109 @@
+package com.labirinto.app.benchmark;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.labirinto.app.service.PhotoDuplicateIndex;
+import com.labirinto.app.util.PerceptualHash;
+
+/**
+ * Near-duplicate lookups in {@link PhotoDuplicateIndex} against a linear scan
+ * of all the hashes, at the default maximum distance of 6 bits.
+ * <p>
+ * Half of the queries are copies of an indexed photo (up to 6 bits flipped),
+ * half are new photos. With {@code bitBias} 0.5 hashes are uniform; with 0.25
+ * every bit is set with that probability, as for collections of dark or flat
+ * photos, which crowds the chunk tables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DuplicateIndexBenchmark {
+
+    private static final int MAX_DISTANCE = 6;
+    private static final int QUERIES = 1024;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int photos;
+
+    @Param({ "0.5", "0.25" })
+    public double bitBias;
+
+    private PhotoDuplicateIndex index;
+    private long[] hashes;
+    private long[] queries;
+
+    @Setup
+    public void buildIndex() {
+        Random random = new Random(42);
+        index = new PhotoDuplicateIndex(null, MAX_DISTANCE);
+        hashes = new long[photos];
+        for (int i = 0; i < photos; i++) {
+            hashes[i] = randomHash(random);
+            index.add((long) i, hashes[i]);
+        }
+        queries = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            if (i % 2 == 0) {
+                long copy = hashes[random.nextInt(photos)];
+                for (int flips = random.nextInt(MAX_DISTANCE + 1); flips > 0; flips--) {
+                    copy ^= 1L << random.nextInt(64);
+                }
+                queries[i] = copy;
+            } else {
+                queries[i] = randomHash(random);
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<Long> indexLookup() {
+        return index.findDuplicate(nextQuery());
+    }
+
+    @Benchmark
+    public long linearScan() {
+        long query = nextQuery();
+        long best = -1;
+        int bestDistance = MAX_DISTANCE + 1;
+        for (int i = 0; i < hashes.length; i++) {
+            int distance = PerceptualHash.distance(query, hashes[i]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private long nextQuery() {
+        return queries[ThreadLocalRandom.current().nextInt(QUERIES)];
+    }
+
+    private long randomHash(Random random) {
+        long hash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (random.nextDouble() < bitBias) {
+                hash |= 1L << bit;
+            }
+        }
+        return hash;
+    }
+}
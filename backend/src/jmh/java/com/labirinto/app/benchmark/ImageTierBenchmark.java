@@ -0,0 +1,115 @@
+package com.labirinto.app.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.service.PhotoService.PreparedPhoto;
+
+/**
+ * Serving a 12 megapixel photo over HTTP as the original and as the
+ * thumbnail tiers. Small and medium are precomputed at ingest; large comes
+ * from the derivative cache, or is rendered on every request when the cache
+ * is too small to keep it ({@code cached} false). The bytes of each response
+ * are printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageTierBenchmark {
+
+    private static final int PHOTOS = 4;
+
+    @Param({ "true", "false" })
+    public boolean cached;
+
+    private BenchmarkApplication application;
+    private HttpClient httpClient;
+    private int port;
+    private long[] photoIds;
+    // Round robin, so that with a one-entry cache every large request misses
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException, InterruptedException {
+        application = BenchmarkApplication.withWebServer(
+                "--app.derivatives.max-size=" + (cached ? "512MB" : "1B"));
+        port = application.port();
+
+        PhotoService photoService = application.getBean(PhotoService.class);
+        List<PreparedPhoto> photos = new ArrayList<>();
+        for (int i = 0; i < PHOTOS; i++) {
+            photos.add(photoService.prepare(Corpus.image(4032, 3024, "jpg", i)));
+        }
+        photoService.saveAll(photos);
+        photoIds = application.getBean(PhotoRepository.class).findAllIds().stream()
+                .mapToLong(Long::longValue).toArray();
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        System.out.printf("%noriginal %d byte, small %d, medium %d, large %d%n",
+                original(), thumbnail("small"), thumbnail("medium"), thumbnail("large"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        httpClient.close();
+        application.close();
+    }
+
+    @Benchmark
+    public int original() throws IOException, InterruptedException {
+        return get("/api/photo/" + nextPhotoId() + "/image");
+    }
+
+    @Benchmark
+    public int medium() throws IOException, InterruptedException {
+        return thumbnail("medium");
+    }
+
+    @Benchmark
+    public int large() throws IOException, InterruptedException {
+        return thumbnail("large");
+    }
+
+    private int thumbnail(String size) throws IOException, InterruptedException {
+        return get("/api/photo/" + nextPhotoId() + "/thumbnail?size=" + size);
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Status " + response.statusCode() + " for " + path);
+        }
+        return response.body().length;
+    }
+
+    private long nextPhotoId() {
+        return photoIds[Math.floorMod(next.getAndIncrement(), photoIds.length)];
+    }
+}
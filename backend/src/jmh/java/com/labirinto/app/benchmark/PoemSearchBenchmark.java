@@ -0,0 +1,63 @@
+package com.labirinto.app.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import com.labirinto.app.dto.PoemSearchResult;
+import com.labirinto.app.repository.PoemRepository;
+import com.labirinto.app.search.PoemSearchIndex;
+
+/**
+ * Full-text poem search on a corpus of synthetic poems, for a frequent
+ * term, an intersection of frequent terms and a rare term.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PoemSearchBenchmark {
+
+    private static final int POEMS = 5_000;
+
+    @Param({ "amore", "notte stelle", "mare d'inverno", "giardino campane neve" })
+    public String query;
+
+    private BenchmarkApplication application;
+    private PoemSearchIndex poemSearchIndex;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.inMemory();
+        application.getBean(PoemRepository.class).saveAll(Corpus.poems(POEMS, 42));
+        poemSearchIndex = application.getBean(PoemSearchIndex.class);
+        poemSearchIndex.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public Page<PoemSearchResult> search() {
+        return poemSearchIndex.search(query, PageRequest.of(0, 20));
+    }
+}
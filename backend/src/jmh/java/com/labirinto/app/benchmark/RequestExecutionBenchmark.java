@@ -0,0 +1,144 @@
+package com.labirinto.app.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.service.PhotoService.PreparedPhoto;
+
+/**
+ * Load test of the web server on platform threads and on virtual threads
+ * (spring.threads.virtual.enabled).
+ * <p>
+ * Slow clients download full size images a few kilobytes at a time. Each one
+ * holds a request thread for the whole download. Meanwhile other clients
+ * ask for photo summaries, a cheap JPA read. Tomcat gets a small pool, so
+ * on platform threads the slow downloads use all of it and the cheap
+ * requests wait in line. Throughput and SampleTime percentiles are reported
+ * for both kinds of client.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestExecutionBenchmark {
+
+    private static final int PHOTOS = 4;
+    private static final int TOMCAT_THREADS = 16;
+    private static final int SLOW_CLIENTS = 32;
+    private static final int FAST_CLIENTS = 4;
+    private static final int SLOW_CLIENT_BUFFER = 16 * 1024;
+    private static final long SLOW_CLIENT_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({ "false", "true" })
+    public boolean virtualThreads;
+
+    private BenchmarkApplication application;
+    private HttpClient httpClient;
+    private int port;
+    private long[] photoIds;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        application = BenchmarkApplication.withWebServer(
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS);
+        port = application.port();
+
+        PhotoService photoService = application.getBean(PhotoService.class);
+        List<PreparedPhoto> photos = new ArrayList<>();
+        for (int i = 0; i < PHOTOS; i++) {
+            photos.add(photoService.prepare(Corpus.image(4032, 3024, "jpg", i)));
+        }
+        photoService.saveAll(photos);
+        photoIds = application.getBean(PhotoRepository.class).findAllIds().stream()
+                .mapToLong(Long::longValue).toArray();
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        httpClient.close();
+        application.close();
+    }
+
+    /**
+     * Downloads a full size image as a slow client would. The range keeps
+     * Tomcat from handing the file to sendfile, so a request thread writes it.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(SLOW_CLIENTS)
+    public long slowImageDownload() throws IOException {
+        long id = randomPhotoId();
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(SLOW_CLIENT_BUFFER);
+            socket.connect(new InetSocketAddress("localhost", port));
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /api/photo/" + id + "/image HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Range: bytes=0-\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[SLOW_CLIENT_BUFFER];
+            long total = 0;
+            for (int read; (read = in.read(buffer)) != -1;) {
+                total += read;
+                LockSupport.parkNanos(SLOW_CLIENT_PAUSE_NANOS);
+            }
+            return total;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(FAST_CLIENTS)
+    public int photoSummary() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/photo/" + randomPhotoId())).build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private long randomPhotoId() {
+        return photoIds[ThreadLocalRandom.current().nextInt(photoIds.length)];
+    }
+}
@@ -0,0 +1,121 @@
+package com.labirinto.app.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.entities.Poem;
+import com.labirinto.app.entities.UserPhoto;
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+import com.labirinto.app.util.ImageFormat;
+
+/**
+ * Serialization of the payloads the controllers return most: lists of
+ * photos (entity and summary), of poems with their text and of collected
+ * photos, in each format the API negotiates, with and without the gzip
+ * compression Tomcat applies on top. The size in bytes of every payload is
+ * printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int count;
+
+    @Param({ "json", "cbor", "smile" })
+    public String format;
+
+    @Param({ "false", "true" })
+    public boolean gzip;
+
+    private ObjectMapper objectMapper;
+    private List<Photo> photos;
+    private List<PhotoSummary> photoSummaries;
+    private List<Poem> poems;
+    private List<UserPhoto> userPhotos;
+
+    @Setup
+    public void createPayloads() throws IOException {
+        objectMapper = switch (format) {
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> new ObjectMapper();
+        };
+
+        Random random = new Random(42);
+        photos = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            photos.add(new Photo(id, String.format("#%06X", random.nextInt(0x1000000)),
+                    "%064x".formatted(random.nextLong()), 1920, 1080, PhotoStatus.READY, random.nextLong(), null, null, ImageFormat.JPEG));
+        }
+        photoSummaries = photos.stream().map(PhotoSummary::from).toList();
+        poems = Corpus.poems(count, 42);
+        for (int i = 0; i < count; i++) {
+            poems.get(i).setId(i + 1L);
+        }
+        userPhotos = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            userPhotos.add(new UserPhoto(new UserPhotoId(1L + id % 10, id)));
+        }
+
+        System.out.printf("%n%s%s, %d items: photos %d byte, photoSummaries %d, poems %d, userPhotos %d%n",
+                format, gzip ? "+gzip" : "", count, photos().length, photoSummaries().length, poems().length,
+                userPhotos().length);
+    }
+
+    @Benchmark
+    public byte[] photos() throws IOException {
+        return serialize(photos);
+    }
+
+    @Benchmark
+    public byte[] photoSummaries() throws IOException {
+        return serialize(photoSummaries);
+    }
+
+    @Benchmark
+    public byte[] poems() throws IOException {
+        return serialize(poems);
+    }
+
+    @Benchmark
+    public byte[] userPhotos() throws IOException {
+        return serialize(userPhotos);
+    }
+
+    private byte[] serialize(Object payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            objectMapper.writeValue(out, payload);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+package com.labirinto.app.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.entities.Poem;
+import com.labirinto.app.entities.User;
+
+/**
+ * Read-through caches for the catalog lookups by id. Whole lists are not
+ * cached: the /list endpoints read keyset pages straight from the indexes.
+ * Each cache is bounded by the
+ * estimated size in bytes of its values and evicts with Caffeine's
+ * W-TinyLFU policy. Invalidation is declared next to the write methods, see
+ * the repositories and {@code PhotoService}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String POEMS = "poems";
+    public static final String PHOTO_SUMMARIES = "photoSummaries";
+    public static final String USERS = "users";
+
+    @Value("${app.cache.poems.max-size:16MB}")
+    private DataSize poemsMaxSize;
+
+    @Value("${app.cache.photos.max-size:8MB}")
+    private DataSize photosMaxSize;
+
+    @Value("${app.cache.users.max-size:1MB}")
+    private DataSize usersMaxSize;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Only the caches registered below exist
+        cacheManager.setCacheNames(List.of());
+        cacheManager.registerCustomCache(POEMS, build(poemsMaxSize));
+        cacheManager.registerCustomCache(PHOTO_SUMMARIES, build(photosMaxSize));
+        cacheManager.registerCustomCache(USERS, build(usersMaxSize));
+        // Puts and evictions made inside a transaction are applied after the
+        // commit, so that concurrent reads cannot cache the old state again
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    private static Cache<Object, Object> build(DataSize maxSize) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((key, value) -> estimateSize(value))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Rough retained size of a cached value: object headers and fields plus
+     * the characters of its strings (Latin-1 strings take a byte per char).
+     */
+    static int estimateSize(Object value) {
+        if (value instanceof Poem poem) {
+            return 32 + estimateSize(poem.getTitle()) + estimateSize(poem.getText());
+        }
+        if (value instanceof User user) {
+            return 24 + estimateSize(user.getUsername());
+        }
+        if (value instanceof PhotoSummary photo) {
+            // Plus the encoded palette, 40 characters at the default size
+            return 64 + estimateSize(photo.getRepresentativeColor()) + 80;
+        }
+        if (value instanceof String string) {
+            return 40 + string.length();
+        }
+        return 16;
+    }
+}
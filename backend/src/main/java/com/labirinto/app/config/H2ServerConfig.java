@@ -1,16 +1,19 @@
 package com.labirinto.app.config;
 
 import org.h2.tools.Server;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.sql.SQLException;
 
 @Configuration
+@ConditionalOnProperty(name = "app.h2.tcp-server.enabled", havingValue = "true")
 public class H2ServerConfig {
 
     @Bean(initMethod = "start", destroyMethod = "stop")
-    public Server h2TcpServer() throws SQLException {
-        return Server.createTcpServer("-tcp", "-tcpAllowOthers", "-tcpPort", "9092");
+    public Server h2TcpServer(@Value("${app.h2.tcp-server.port:9092}") int port) throws SQLException {
+        return Server.createTcpServer("-tcp", "-tcpAllowOthers", "-tcpPort", String.valueOf(port));
     }
 }
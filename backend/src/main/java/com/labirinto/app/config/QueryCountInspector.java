@@ -0,0 +1,28 @@
+package com.labirinto.app.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, so
+ * {@link RequestMetricsFilter} can report the queries issued by a request.
+ * Registered through {@code hibernate.session_factory.statement_inspector},
+ * hence the static state.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    static int get() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+}
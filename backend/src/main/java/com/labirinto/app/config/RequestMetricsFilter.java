@@ -0,0 +1,228 @@
+package com.labirinto.app.config;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Per-request metrics that Spring Boot does not record on its own, next to
+ * its {@code http.server.requests} timers: size of the response body and
+ * number of SQL statements run by Hibernate, both tagged like the timers.
+ * <p>
+ * It also writes the access log, on the {@code com.labirinto.app.access}
+ * logger (asynchronous, see logback-spring.xml). Only a sample of the
+ * requests is logged, plus every slow or failed one.
+ */
+@Component
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger accessLogger = LoggerFactory.getLogger("com.labirinto.app.access");
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final long slowThresholdMillis;
+
+    public RequestMetricsFilter(MeterRegistry meterRegistry,
+            @Value("${app.access-log.sample-rate:0.01}") double sampleRate,
+            @Value("${app.access-log.slow-threshold:1s}") Duration slowThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+        this.slowThresholdMillis = slowThreshold.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        QueryCountInspector.reset();
+        CountingResponse counting = new CountingResponse(response);
+        try {
+            chain.doFilter(request, counting);
+        } finally {
+            int queries = QueryCountInspector.get();
+            if (request.isAsyncStarted()) {
+                // Streaming bodies are written after the handler returned
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, counting, start, queries);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, counting, start, queries);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, CountingResponse response, long start, int queries) {
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        String uri = uriTag(request, response.getStatus());
+        String method = request.getMethod();
+        String status = String.valueOf(response.getStatus());
+        long bytes = response.bodySize(request);
+
+        DistributionSummary.builder("http.server.response.size")
+                .description("Size of the response bodies")
+                .baseUnit("bytes")
+                .tags("method", method, "uri", uri, "status", status)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(64.0)
+                .maximumExpectedValue(64.0 * 1024 * 1024)
+                .register(meterRegistry)
+                .record(bytes);
+        DistributionSummary.builder("http.server.requests.queries")
+                .description("SQL statements run by Hibernate per request")
+                .tags("method", method, "uri", uri)
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50, 100)
+                .register(meterRegistry)
+                .record(queries);
+
+        if (response.getStatus() >= 500 || elapsedMillis >= slowThresholdMillis
+                || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            accessLogger.info("{} {} -> {} in {} ms, {} byte, {} query SQL", method, request.getRequestURI(),
+                    status, elapsedMillis, bytes, queries);
+        }
+    }
+
+    // Same values as the uri tag of http.server.requests: the route template,
+    // never the raw path, so the number of series stays bounded
+    private static String uriTag(HttpServletRequest request, int status) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return pattern.toString();
+        }
+        if (status == 404) {
+            return "NOT_FOUND";
+        }
+        return status >= 300 && status < 400 ? "REDIRECTION" : "UNKNOWN";
+    }
+
+    /**
+     * Counts the bytes written to the body. Files sent with sendfile never go
+     * through the output stream, their size is the range handed to Tomcat.
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private CountingOutputStream outputStream;
+        private PrintWriter writer;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long bodySize(HttpServletRequest request) {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (request.getAttribute(SENDFILE_FILENAME) != null
+                    && request.getAttribute(SENDFILE_START) instanceof Long sendfileStart
+                    && request.getAttribute(SENDFILE_END) instanceof Long sendfileEnd) {
+                return sendfileEnd - sendfileStart;
+            }
+            return outputStream != null ? outputStream.count : 0;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(),
+                        Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private long count;
+
+        CountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            delegate.setWriteListener(listener);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.labirinto.app.controller;
+
+import java.util.List;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.labirinto.app.dto.CacheStats;
+
+@RestController
+@RequestMapping("/api/cache")
+@CrossOrigin(origins = "http://localhost:5173")
+public class CacheController {
+
+    private final CacheManager cacheManager;
+
+    public CacheController(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Hit, miss and eviction counts of the catalog caches since startup.
+     */
+    @GetMapping("/stats")
+    public List<CacheStats> stats() {
+        return cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(name -> toStats(name, cacheManager.getCache(name).getNativeCache()))
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CacheStats toStats(String name, Object nativeCache) {
+        Cache<Object, Object> cache = (Cache<Object, Object>) nativeCache;
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        Eviction<Object, Object> eviction = cache.policy().eviction().orElseThrow();
+        return new CacheStats(name, stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.estimatedSize(), eviction.weightedSize().orElse(0), eviction.getMaximum());
+    }
+}
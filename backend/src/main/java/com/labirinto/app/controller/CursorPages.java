@@ -0,0 +1,153 @@
+package com.labirinto.app.controller;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Keyset pagination shared by the {@code /list} endpoints.
+ * <p>
+ * Pages are requested with {@code after} (the cursor of the last item
+ * received, omitted for the first page) and {@code limit}, capped by
+ * {@code app.list.max-limit}. The body stays a plain array, streamed item by
+ * item, in JSON or, if the Accept header of the current request prefers
+ * them, in CBOR or Smile (see {@code SerializationConfig}); the cursor of the
+ * next page, if any, is returned in the {@value #NEXT_CURSOR_HEADER} header.
+ * An optional {@code fields} parameter restricts the properties written for
+ * each item.
+ */
+@Component
+public class CursorPages {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Supported formats, in order of preference when the client accepts several
+    private final Map<MediaType, ObjectMapper> mappers = new LinkedHashMap<>();
+    private final Map<MediaType, ObjectWriter> itemWriters = new LinkedHashMap<>();
+    private final ContentNegotiationManager contentNegotiationManager;
+
+    @Value("${app.list.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${app.list.max-limit:1000}")
+    private int maxLimit;
+
+    public CursorPages(ObjectMapper objectMapper, MappingJackson2CborHttpMessageConverter cborConverter,
+            MappingJackson2SmileHttpMessageConverter smileConverter,
+            ContentNegotiationManager contentNegotiationManager) {
+        this.contentNegotiationManager = contentNegotiationManager;
+        mappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        mappers.put(MediaType.APPLICATION_CBOR, cborConverter.getObjectMapper());
+        mappers.put(new MediaType("application", "x-jackson-smile"), smileConverter.getObjectMapper());
+        mappers.forEach((mediaType, mapper) -> itemWriters.put(mediaType,
+                mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)));
+    }
+
+    /**
+     * Rows to fetch for a page: one more than its size, to tell whether
+     * another page follows.
+     */
+    public Limit fetchLimit(Integer limit) {
+        return Limit.of(pageSize(limit) + 1);
+    }
+
+    public <T> ResponseEntity<StreamingResponseBody> toResponse(List<T> fetched, Integer limit, Set<String> fields,
+            Function<T, String> cursorOf) {
+        int pageSize = pageSize(limit);
+        List<T> page = fetched.size() > pageSize ? fetched.subList(0, pageSize) : fetched;
+        MediaType mediaType = negotiateMediaType();
+        ObjectMapper objectMapper = mappers.get(mediaType);
+        ObjectWriter itemWriter = itemWriters.get(mediaType);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                for (T item : page) {
+                    if (fields == null || fields.isEmpty()) {
+                        itemWriter.writeValue(generator, item);
+                    } else {
+                        ObjectNode node = objectMapper.valueToTree(item);
+                        node.retain(fields);
+                        itemWriter.writeValue(generator, node);
+                    }
+                }
+                generator.writeEndArray();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(mediaType).varyBy(HttpHeaders.ACCEPT);
+        if (fetched.size() > pageSize) {
+            response.header(NEXT_CURSOR_HEADER, cursorOf.apply(page.get(page.size() - 1)));
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Parses the cursor of tables keyed by two ids, formatted as {@code first:second}.
+     */
+    public static Optional<long[]> parsePairCursor(String cursor) {
+        if (cursor == null) {
+            return Optional.of(new long[] { 0, 0 });
+        }
+        String[] parts = cursor.split(":");
+        if (parts.length != 2) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]) });
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static String pairCursor(Long first, Long second) {
+        return first + ":" + second;
+    }
+
+    // JSON unless the client prefers one of the other formats
+    private MediaType negotiateMediaType() {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        List<MediaType> acceptable;
+        try {
+            acceptable = contentNegotiationManager.resolveMediaTypes(new ServletWebRequest(attributes.getRequest()));
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        for (MediaType accepted : acceptable) {
+            for (MediaType supported : mappers.keySet()) {
+                if (accepted.includes(supported)) {
+                    return supported;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private int pageSize(Integer limit) {
+        return limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+    }
+}
@@ -0,0 +1,51 @@
+package com.labirinto.app.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.labirinto.app.dto.LabyrinthSession;
+import com.labirinto.app.service.LabyrinthSessionService;
+
+@RestController
+@RequestMapping("/api/labyrinth")
+@CrossOrigin(origins = "http://localhost:5173")
+public class LabyrinthController {
+
+    private static final int MAX_PHOTOS_PER_DRAW = 100;
+
+    private final LabyrinthSessionService labyrinthSessionService;
+
+    public LabyrinthController(LabyrinthSessionService labyrinthSessionService) {
+        this.labyrinthSessionService = labyrinthSessionService;
+    }
+
+    /**
+     * Starts a run for the user and returns its first {@code count} photos.
+     */
+    @PostMapping("/session/{userId}")
+    public LabyrinthSession start(@PathVariable Long userId, @RequestParam(defaultValue = "1") int count) {
+        return labyrinthSessionService.start(userId, clamp(count));
+    }
+
+    @GetMapping("/session/{sessionId}/next")
+    public ResponseEntity<LabyrinthSession> next(@PathVariable String sessionId,
+            @RequestParam(defaultValue = "1") int count) {
+        return ResponseEntity.of(labyrinthSessionService.next(sessionId, clamp(count)));
+    }
+
+    @DeleteMapping("/session/{sessionId}")
+    public void end(@PathVariable String sessionId) {
+        labyrinthSessionService.end(sessionId);
+    }
+
+    private static int clamp(int count) {
+        return Math.max(0, Math.min(count, MAX_PHOTOS_PER_DRAW));
+    }
+}
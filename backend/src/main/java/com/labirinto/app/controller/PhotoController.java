@@ -1,10 +1,17 @@
 package com.labirinto.app.controller;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -12,103 +19,219 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import com.labirinto.app.dto.PhotoRequest;
-import com.labirinto.app.entities.Photo;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.labirinto.app.dto.IngestionStageStats;
+import com.labirinto.app.dto.PhotoIngestionStatus;
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.entities.PhotoThumbnail;
 import com.labirinto.app.repository.PhotoRepository;
-import com.labirinto.app.repository.UserPhotoRepository;
-import com.labirinto.app.util.ColorExtractor;
+import com.labirinto.app.service.PhotoCollectionIndex;
+import com.labirinto.app.service.PhotoColorIndex;
+import com.labirinto.app.service.PhotoDuplicateIndex;
+import com.labirinto.app.service.PhotoIngestionService;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.service.PhotoService.StoredImage;
+import com.labirinto.app.util.LabColor;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/photo")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = CursorPages.NEXT_CURSOR_HEADER)
 public class PhotoController {
 
-    private final PhotoRepository photoRepository;
-    private final UserPhotoRepository userPhotoRepository;
+    // Images never change for a given id: clients may reuse them for a day and
+    // then revalidate cheaply with If-None-Match against the content hash.
+    private static final CacheControl IMAGE_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+    private static final int MAX_NEAREST_PHOTOS = 100;
 
-    public PhotoController(PhotoRepository photoRepository, UserPhotoRepository userPhotoRepository) {
+    // Tomcat request attributes asking the connector to send a file with sendfile(2)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final PhotoRepository photoRepository;
+    private final PhotoService photoService;
+    private final PhotoCollectionIndex photoCollectionIndex;
+    private final PhotoColorIndex photoColorIndex;
+    private final PhotoDuplicateIndex photoDuplicateIndex;
+    private final PhotoIngestionService photoIngestionService;
+    private final CursorPages cursorPages;
+
+    public PhotoController(PhotoRepository photoRepository, PhotoService photoService,
+            PhotoCollectionIndex photoCollectionIndex, PhotoColorIndex photoColorIndex,
+            PhotoDuplicateIndex photoDuplicateIndex, PhotoIngestionService photoIngestionService,
+            CursorPages cursorPages) {
         this.photoRepository = photoRepository;
-        this.userPhotoRepository = userPhotoRepository;
+        this.photoService = photoService;
+        this.photoCollectionIndex = photoCollectionIndex;
+        this.photoColorIndex = photoColorIndex;
+        this.photoDuplicateIndex = photoDuplicateIndex;
+        this.photoIngestionService = photoIngestionService;
+        this.cursorPages = cursorPages;
     }
 
+    /**
+     * Keyset page of ready photos ordered by id, see {@link CursorPages}.
+     */
     @GetMapping("/list")
-    public List<Photo> list() {
-        return photoRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> list(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) Set<String> fields) {
+        List<PhotoSummary> photos = photoRepository.findSummariesAfter(after != null ? after : 0,
+                cursorPages.fetchLimit(limit));
+        return cursorPages.toResponse(photos, limit, fields, photo -> photo.getId().toString());
     }
 
     @GetMapping("/{id}")
-    public Optional<Photo> getById(@PathVariable Long id) {
-        return photoRepository.findById(id);
+    public Optional<PhotoSummary> getById(@PathVariable Long id) {
+        return photoRepository.findSummaryById(id);
+    }
+
+    /**
+     * Accepts a multipart upload ({@code file} part) and processes it in the
+     * background. Poll the returned status URL until the photo is READY.
+     */
+    @PostMapping(path = "/add", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PhotoIngestionStatus> add(@RequestParam("file") MultipartFile file) throws IOException {
+        return photoIngestionService.submit(file)
+                .map(status -> ResponseEntity.accepted().location(URI.create(status.getStatusUrl())).body(status))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build());
+    }
+
+    @GetMapping("/{id}/status")
+    public ResponseEntity<PhotoIngestionStatus> getStatus(@PathVariable Long id) {
+        return ResponseEntity.of(photoIngestionService.getStatus(id));
     }
 
-    @PostMapping("/add")
-    public Photo add(@RequestBody PhotoRequest photoRequest) {
-        String representativeColor = ColorExtractor.extractRepresentativeColor(photoRequest.getImage());
-        Photo photo = new Photo(null, photoRequest.getImage(), representativeColor);
-        return photoRepository.save(photo);
+    @GetMapping("/ingestion/stats")
+    public List<IngestionStageStats> getIngestionStats() {
+        return photoIngestionService.getStats();
     }
 
     @DeleteMapping("/{id}")
     public void delete(@PathVariable Long id) {
-        photoRepository.deleteById(id);
+        photoService.delete(id);
+        photoCollectionIndex.removePhoto(id);
+        photoColorIndex.remove(id);
+        photoDuplicateIndex.remove(id);
     }
 
     @GetMapping("/count")
     public long count() {
-        return photoRepository.count();
+        return photoRepository.countByStatus(PhotoStatus.READY);
     }
 
+    /**
+     * Photos whose representative color is within {@code deltaE} (CIE76) of
+     * the given one or, with {@code palette}, that have a palette color
+     * covering at least {@code minWeight} of the image within that distance.
+     */
     @GetMapping("/by-color/{color}")
-    public List<Photo> getByColor(@PathVariable String color) {
-        return photoRepository.findAll().stream()
-                .filter(photo -> color.equalsIgnoreCase(photo.getRepresentativeColor()))
-                .toList();
+    public ResponseEntity<List<PhotoSummary>> getByColor(@PathVariable String color,
+            @RequestParam(defaultValue = "10") double deltaE,
+            @RequestParam(defaultValue = "false") boolean palette,
+            @RequestParam(defaultValue = "0.1") double minWeight) {
+        if (!LabColor.isHex(color)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(palette
+                ? photoColorIndex.findWithinPalette(color, deltaE, minWeight)
+                : photoColorIndex.findWithin(color, deltaE));
+    }
+
+    @GetMapping("/by-color/{color}/nearest")
+    public ResponseEntity<List<PhotoSummary>> getNearestByColor(@PathVariable String color,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "false") boolean palette,
+            @RequestParam(defaultValue = "0.1") double minWeight) {
+        if (!LabColor.isHex(color)) {
+            return ResponseEntity.badRequest().build();
+        }
+        int limit = Math.min(k, MAX_NEAREST_PHOTOS);
+        return ResponseEntity.ok(palette
+                ? photoColorIndex.findNearestInPalette(color, limit, minWeight)
+                : photoColorIndex.findNearest(color, limit));
     }
 
     @GetMapping("/random-uncollected/{userId}")
-    public Photo getRandomUncollectedPhoto(@PathVariable Long userId) {
-        List<Photo> allPhotos = photoRepository.findAll();
-        List<Long> collectedPhotoIds = userPhotoRepository.findAll().stream()
-                .filter(up -> up.getId().getUserId().equals(userId))
-                .map(up -> up.getId().getPhotoId())
-                .toList();
-
-        // Find a photo that hasn't been collected
-        Optional<Photo> uncollectedPhoto = allPhotos.stream()
-                .filter(photo -> !collectedPhotoIds.contains(photo.getId()))
-                .findAny();
-
-        return uncollectedPhoto.orElse(null);
-    }
-
-@GetMapping("/random-uncollected-with-exclusion/{userId}")
-public ResponseEntity<Photo> getRandomUncollectedWithExclusionPhoto(
-        @PathVariable Long userId,
-        @RequestParam(required = false) List<Long> excludedPhotoIds) {
-
-    Page<Photo> page = userPhotoRepository.findUncollectedWithExclusion(
-            userId,
-            excludedPhotoIds,
-            PageRequest.of(0, 1)
-    );
-
-    return page.hasContent()
-            ? ResponseEntity.ok(page.getContent().get(0))
-            : ResponseEntity.noContent().build();
-}
+    public PhotoSummary getRandomUncollectedPhoto(@PathVariable Long userId) {
+        return photoCollectionIndex.pickUncollected(userId, null)
+                .flatMap(photoRepository::findSummaryById)
+                .orElse(null);
+    }
 
-@GetMapping("/{id}/image")
-public ResponseEntity<byte[]> getPhotoImage(@PathVariable Long id) {
-    Photo photo = photoRepository.findById(id).orElseThrow();
-    return ResponseEntity.ok()
-        .contentType(MediaType.IMAGE_JPEG)
-        .body(photo.getImage());
-}
+    @GetMapping("/random-uncollected-with-exclusion/{userId}")
+    public ResponseEntity<PhotoSummary> getRandomUncollectedWithExclusionPhoto(
+            @PathVariable Long userId,
+            @RequestParam(required = false) List<Long> excludedPhotoIds) {
+
+        return photoCollectionIndex.pickUncollected(userId, excludedPhotoIds)
+                .flatMap(photoRepository::findSummaryById)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Streams the original image. Conditional requests are answered with
+     * 304 Not Modified and Range requests with 206 Partial Content.
+     */
+    @GetMapping("/{id}/image")
+    public ResponseEntity<Resource> getPhotoImage(@PathVariable Long id, HttpServletRequest request)
+            throws IOException {
+        return toImageResponse(photoService.findImage(id), request);
+    }
+
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<Resource> getPhotoThumbnail(@PathVariable Long id,
+            @RequestParam(defaultValue = "small") String size, HttpServletRequest request) throws IOException {
+        Optional<PhotoThumbnail.Size> thumbnailSize = PhotoThumbnail.Size.fromName(size);
+        if (thumbnailSize.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return toImageResponse(photoService.findThumbnail(id, thumbnailSize.get()), request);
+    }
+
+    private ResponseEntity<Resource> toImageResponse(Optional<StoredImage> image, HttpServletRequest request)
+            throws IOException {
+        if (image.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StoredImage img = image.get();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(img.mediaType())
+                .eTag(img.contentHash())
+                .cacheControl(IMAGE_CACHE_CONTROL);
+
+        // Plain GETs of a file are handed to the connector, which copies it
+        // to the socket without going through the heap once the headers are
+        // written. Ranges and revalidations are left to Spring.
+        if (isSendfileCandidate(request, img.resource())) {
+            File file = img.resource().getFile();
+            long length = file.length();
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return response.contentLength(length).header(HttpHeaders.ACCEPT_RANGES, "bytes").build();
+        }
+        return response.body(img.resource());
+    }
+
+    private static boolean isSendfileCandidate(HttpServletRequest request, Resource resource) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))
+                && "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && resource.isFile();
+    }
 
 
 }
@@ -1,8 +1,13 @@
 package com.labirinto.app.controller;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,26 +16,48 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.labirinto.app.dto.PoemRequest;
+import com.labirinto.app.dto.PoemSearchResult;
+import com.labirinto.app.dto.PoemTitle;
 import com.labirinto.app.entities.Poem;
 import com.labirinto.app.repository.PoemRepository;
+import com.labirinto.app.search.PoemSearchIndex;
 
 @RestController
 @RequestMapping("/api/poem")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = CursorPages.NEXT_CURSOR_HEADER)
 public class PoemController {
 
     private final PoemRepository poemRepository;
+    private final PoemSearchIndex poemSearchIndex;
+    private final CursorPages cursorPages;
 
-    public PoemController(PoemRepository poemRepository) {
+    public PoemController(PoemRepository poemRepository, PoemSearchIndex poemSearchIndex, CursorPages cursorPages) {
         this.poemRepository = poemRepository;
+        this.poemSearchIndex = poemSearchIndex;
+        this.cursorPages = cursorPages;
     }
 
+    /**
+     * Keyset page of poems ordered by id, see {@link CursorPages}. When
+     * {@code fields} leaves out {@code text} the texts are not even loaded.
+     */
     @GetMapping("/list")
-    public List<Poem> list() {
-        return poemRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> list(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) Set<String> fields) {
+        long start = after != null ? after : 0;
+        if (fields != null && !fields.isEmpty() && !fields.contains("text")) {
+            List<PoemTitle> titles = poemRepository.findByIdGreaterThanOrderByIdAsc(start,
+                    cursorPages.fetchLimit(limit), PoemTitle.class);
+            return cursorPages.toResponse(titles, limit, fields, poem -> poem.getId().toString());
+        }
+        List<Poem> poems = poemRepository.findByIdGreaterThanOrderByIdAsc(start, cursorPages.fetchLimit(limit),
+                Poem.class);
+        return cursorPages.toResponse(poems, limit, fields, poem -> poem.getId().toString());
     }
 
     @GetMapping("/{id}")
@@ -40,8 +67,9 @@ public class PoemController {
 
     @PostMapping("/add")
     public Poem add(@RequestBody PoemRequest poemRequest) {
-        Poem poem = new Poem(null, poemRequest.getTitle(), poemRequest.getText());
-        return poemRepository.save(poem);
+        Poem poem = poemRepository.save(new Poem(null, poemRequest.getTitle(), poemRequest.getText()));
+        poemSearchIndex.index(poem);
+        return poem;
     }
 
     @PutMapping("/{id}")
@@ -49,7 +77,9 @@ public class PoemController {
         return poemRepository.findById(id)
                 .map(poem -> {
                     Poem updatedPoem = new Poem(poem.getId(), poemRequest.getTitle(), poemRequest.getText());
-                    return poemRepository.save(updatedPoem);
+                    updatedPoem = poemRepository.save(updatedPoem);
+                    poemSearchIndex.index(updatedPoem);
+                    return updatedPoem;
                 })
                 .orElseThrow(() -> new IllegalArgumentException("Poem not found with id: " + id));
     }
@@ -57,6 +87,7 @@ public class PoemController {
     @DeleteMapping("/{id}")
     public void delete(@PathVariable Long id) {
         poemRepository.deleteById(id);
+        poemSearchIndex.remove(id);
     }
 
     @GetMapping("/count")
@@ -64,10 +95,22 @@ public class PoemController {
         return poemRepository.count();
     }
 
+    /**
+     * Full-text search over titles and texts, ranked by relevance.
+     */
+    @GetMapping("/search")
+    public Page<PoemSearchResult> search(@RequestParam String q, Pageable pageable) {
+        return poemSearchIndex.search(q, pageable);
+    }
+
+    /**
+     * Poems whose title contains the given string, ignoring case, in id order.
+     * See {@link #search} for ranked matches on texts too.
+     */
     @GetMapping("/search/{title}")
     public List<Poem> searchByTitle(@PathVariable String title) {
-        return poemRepository.findAll().stream()
-                .filter(poem -> poem.getTitle() != null && poem.getTitle().toLowerCase().contains(title.toLowerCase()))
+        return poemRepository.findAllById(poemSearchIndex.findIdsByTitleContaining(title)).stream()
+                .sorted(Comparator.comparing(Poem::getId))
                 .toList();
     }
 }
@@ -2,6 +2,9 @@ package com.labirinto.app.controller;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.http.ResponseEntity;
 
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,26 +14,44 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.labirinto.app.dto.UserDashboard;
 import com.labirinto.app.dto.UserRequest;
 import com.labirinto.app.entities.User;
+import com.labirinto.app.repository.UserPhotoRepository;
+import com.labirinto.app.repository.UserPoemRepository;
 import com.labirinto.app.repository.UserRepository;
 
 @RestController
 @RequestMapping("/api/user")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = CursorPages.NEXT_CURSOR_HEADER)
 public class UserController {
 
     private final UserRepository userRepository;
+    private final UserPhotoRepository userPhotoRepository;
+    private final UserPoemRepository userPoemRepository;
+    private final CursorPages cursorPages;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, UserPhotoRepository userPhotoRepository,
+            UserPoemRepository userPoemRepository, CursorPages cursorPages) {
         this.userRepository = userRepository;
+        this.userPhotoRepository = userPhotoRepository;
+        this.userPoemRepository = userPoemRepository;
+        this.cursorPages = cursorPages;
     }
 
+    /**
+     * Keyset page of users ordered by id, see {@link CursorPages}.
+     */
     @GetMapping("/list")
-    public List<User> list() {
-        return userRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> list(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) Set<String> fields) {
+        List<User> users = userRepository.findByIdGreaterThanOrderByIdAsc(after != null ? after : 0,
+                cursorPages.fetchLimit(limit));
+        return cursorPages.toResponse(users, limit, fields, user -> user.getId().toString());
     }
 
     @GetMapping("/{id}")
@@ -38,6 +59,18 @@ public class UserController {
         return userRepository.findById(id);
     }
 
+    /**
+     * User, collected photos and poems in one response. The user usually comes
+     * from the cache, the collections are one join each.
+     */
+    @GetMapping("/{id}/dashboard")
+    public ResponseEntity<UserDashboard> getDashboard(@PathVariable Long id) {
+        return ResponseEntity.of(userRepository.findById(id)
+                .map(user -> new UserDashboard(user.getId(), user.getUsername(),
+                        userPhotoRepository.findCollectedSummaries(id),
+                        userPoemRepository.findCollectedTitles(id))));
+    }
+
     @PostMapping("/add")
     public User add(@RequestBody UserRequest userRequest) {
         User user = new User(null, userRequest.getUsername());
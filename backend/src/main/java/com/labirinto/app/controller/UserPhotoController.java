@@ -1,7 +1,12 @@
 package com.labirinto.app.controller;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,40 +14,89 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.labirinto.app.dto.UserPhotoRequest;
 import com.labirinto.app.entities.UserPhoto;
 import com.labirinto.app.entities.UserPhoto.UserPhotoId;
 import com.labirinto.app.repository.UserPhotoRepository;
+import com.labirinto.app.service.PhotoCollectionIndex;
 
 @RestController
 @RequestMapping("/api/user_photo")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = CursorPages.NEXT_CURSOR_HEADER)
 public class UserPhotoController {
 
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserPhotoRepository userPhotoRepository;
+    private final PhotoCollectionIndex photoCollectionIndex;
+    private final CursorPages cursorPages;
 
-    public UserPhotoController(UserPhotoRepository userPhotoRepository) {
+    public UserPhotoController(UserPhotoRepository userPhotoRepository, PhotoCollectionIndex photoCollectionIndex,
+            CursorPages cursorPages) {
         this.userPhotoRepository = userPhotoRepository;
+        this.photoCollectionIndex = photoCollectionIndex;
+        this.cursorPages = cursorPages;
     }
 
+    /**
+     * Keyset page ordered by user and photo id, see {@link CursorPages}. The
+     * cursor has the form {@code userId:photoId}.
+     */
     @GetMapping("/list")
-    public List<UserPhoto> list() {
-        return userPhotoRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> list(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) Set<String> fields) {
+        return CursorPages.parsePairCursor(after)
+                .map(key -> cursorPages.toResponse(userPhotoRepository.findAfter(key[0], key[1], cursorPages.fetchLimit(limit)),
+                        limit, fields, userPhoto -> CursorPages.pairCursor(userPhoto.getId().getUserId(),
+                                userPhoto.getId().getPhotoId())))
+                .orElseGet(() -> ResponseEntity.badRequest().build());
     }
 
     @PostMapping("/add")
     public UserPhoto add(@RequestBody UserPhotoRequest userPhotoRequest) {
         UserPhotoId userPhotoId = new UserPhotoId(userPhotoRequest.getUserId(), userPhotoRequest.getPhotoId());
-        UserPhoto userPhoto = new UserPhoto(userPhotoId);
-        return userPhotoRepository.save(userPhoto);
+        userPhotoRepository.insertAllIfAbsent(List.of(userPhotoId));
+        photoCollectionIndex.collect(userPhotoId.getUserId(), userPhotoId.getPhotoId());
+        return new UserPhoto(userPhotoId);
     }
 
     @DeleteMapping("/{userId}/{photoId}")
     public void delete(@PathVariable Long userId, @PathVariable Long photoId) {
-        UserPhotoId userPhotoId = new UserPhotoId(userId, photoId);
-        userPhotoRepository.deleteById(userPhotoId);
+        userPhotoRepository.deleteAllByIdDirectly(List.of(new UserPhotoId(userId, photoId)));
+        photoCollectionIndex.uncollect(userId, photoId);
+    }
+
+    /**
+     * Adds all the given links in one transaction; links that already exist
+     * are left as they are.
+     */
+    @PostMapping("/batch/add")
+    public ResponseEntity<Void> addAll(@RequestBody List<UserPhotoRequest> requests) {
+        List<UserPhotoId> ids = toIds(requests);
+        if (ids == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        userPhotoRepository.insertAllIfAbsent(ids);
+        ids.forEach(id -> photoCollectionIndex.collect(id.getUserId(), id.getPhotoId()));
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Removes all the given links in one transaction.
+     */
+    @PostMapping("/batch/remove")
+    public ResponseEntity<Void> removeAll(@RequestBody List<UserPhotoRequest> requests) {
+        List<UserPhotoId> ids = toIds(requests);
+        if (ids == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        userPhotoRepository.deleteAllByIdDirectly(ids);
+        ids.forEach(id -> photoCollectionIndex.uncollect(id.getUserId(), id.getPhotoId()));
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/count")
@@ -52,16 +106,36 @@ public class UserPhotoController {
 
     @GetMapping("/user/{userId}")
     public List<UserPhoto> getByUserId(@PathVariable Long userId) {
-        return userPhotoRepository.findAll().stream()
-                .filter(up -> up.getId().getUserId().equals(userId))
-                .toList();
+        return userPhotoRepository.findByIdUserId(userId);
+    }
+
+    @GetMapping("/user/{userId}/page")
+    public Page<UserPhoto> getByUserIdPaged(@PathVariable Long userId, Pageable pageable) {
+        return userPhotoRepository.findByIdUserId(userId, pageable);
     }
 
     @GetMapping("/photo/{photoId}")
     public List<UserPhoto> getByPhotoId(@PathVariable Long photoId) {
-        return userPhotoRepository.findAll().stream()
-                .filter(up -> up.getId().getPhotoId().equals(photoId))
-                .toList();
+        return userPhotoRepository.findByIdPhotoId(photoId);
+    }
+
+    @GetMapping("/photo/{photoId}/page")
+    public Page<UserPhoto> getByPhotoIdPaged(@PathVariable Long photoId, Pageable pageable) {
+        return userPhotoRepository.findByIdPhotoId(photoId, pageable);
     }
-}
 
+    // Null when the batch is too large or has incomplete links
+    private static List<UserPhotoId> toIds(List<UserPhotoRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            return null;
+        }
+        List<UserPhotoId> ids = new ArrayList<>(requests.size());
+        for (UserPhotoRequest request : requests) {
+            if (request == null || request.getUserId() == null || request.getPhotoId() == null) {
+                return null;
+            }
+            ids.add(new UserPhotoId(request.getUserId(), request.getPhotoId()));
+        }
+        return ids;
+    }
+}
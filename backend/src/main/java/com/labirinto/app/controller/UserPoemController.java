@@ -1,7 +1,12 @@
 package com.labirinto.app.controller;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,7 +14,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.labirinto.app.dto.UserPoemRequest;
 import com.labirinto.app.entities.UserPoem;
@@ -18,31 +25,70 @@ import com.labirinto.app.repository.UserPoemRepository;
 
 @RestController
 @RequestMapping("/api/user_poem")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = CursorPages.NEXT_CURSOR_HEADER)
 public class UserPoemController {
 
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserPoemRepository userPoemRepository;
+    private final CursorPages cursorPages;
 
-    public UserPoemController(UserPoemRepository userPoemRepository) {
+    public UserPoemController(UserPoemRepository userPoemRepository, CursorPages cursorPages) {
         this.userPoemRepository = userPoemRepository;
+        this.cursorPages = cursorPages;
     }
 
+    /**
+     * Keyset page ordered by user and poem id, see {@link CursorPages}. The
+     * cursor has the form {@code userId:poemId}.
+     */
     @GetMapping("/list")
-    public List<UserPoem> list() {
-        return userPoemRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> list(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) Set<String> fields) {
+        return CursorPages.parsePairCursor(after)
+                .map(key -> cursorPages.toResponse(userPoemRepository.findAfter(key[0], key[1], cursorPages.fetchLimit(limit)),
+                        limit, fields, userPoem -> CursorPages.pairCursor(userPoem.getId().getUserId(),
+                                userPoem.getId().getPoemId())))
+                .orElseGet(() -> ResponseEntity.badRequest().build());
     }
 
     @PostMapping("/add")
     public UserPoem add(@RequestBody UserPoemRequest userPoemRequest) {
         UserPoemId userPoemId = new UserPoemId(userPoemRequest.getUserId(), userPoemRequest.getPoemId());
-        UserPoem userPoem = new UserPoem(userPoemId);
-        return userPoemRepository.save(userPoem);
+        userPoemRepository.insertAllIfAbsent(List.of(userPoemId));
+        return new UserPoem(userPoemId);
     }
 
     @DeleteMapping("/{userId}/{poemId}")
     public void delete(@PathVariable Long userId, @PathVariable Long poemId) {
-        UserPoemId userPoemId = new UserPoemId(userId, poemId);
-        userPoemRepository.deleteById(userPoemId);
+        userPoemRepository.deleteAllByIdDirectly(List.of(new UserPoemId(userId, poemId)));
+    }
+
+    /**
+     * Adds all the given links in one transaction; links that already exist
+     * are left as they are.
+     */
+    @PostMapping("/batch/add")
+    public ResponseEntity<Void> addAll(@RequestBody List<UserPoemRequest> requests) {
+        List<UserPoemId> ids = toIds(requests);
+        if (ids == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        userPoemRepository.insertAllIfAbsent(ids);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Removes all the given links in one transaction.
+     */
+    @PostMapping("/batch/remove")
+    public ResponseEntity<Void> removeAll(@RequestBody List<UserPoemRequest> requests) {
+        List<UserPoemId> ids = toIds(requests);
+        if (ids == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        userPoemRepository.deleteAllByIdDirectly(ids);
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/count")
@@ -52,16 +98,36 @@ public class UserPoemController {
 
     @GetMapping("/user/{userId}")
     public List<UserPoem> getByUserId(@PathVariable Long userId) {
-        return userPoemRepository.findAll().stream()
-                .filter(up -> up.getId().getUserId().equals(userId))
-                .toList();
+        return userPoemRepository.findByIdUserId(userId);
+    }
+
+    @GetMapping("/user/{userId}/page")
+    public Page<UserPoem> getByUserIdPaged(@PathVariable Long userId, Pageable pageable) {
+        return userPoemRepository.findByIdUserId(userId, pageable);
     }
 
     @GetMapping("/poem/{poemId}")
     public List<UserPoem> getByPoemId(@PathVariable Long poemId) {
-        return userPoemRepository.findAll().stream()
-                .filter(up -> up.getId().getPoemId().equals(poemId))
-                .toList();
+        return userPoemRepository.findByIdPoemId(poemId);
+    }
+
+    @GetMapping("/poem/{poemId}/page")
+    public Page<UserPoem> getByPoemIdPaged(@PathVariable Long poemId, Pageable pageable) {
+        return userPoemRepository.findByIdPoemId(poemId, pageable);
     }
-}
 
+    // Null when the batch is too large or has incomplete links
+    private static List<UserPoemId> toIds(List<UserPoemRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            return null;
+        }
+        List<UserPoemId> ids = new ArrayList<>(requests.size());
+        for (UserPoemRequest request : requests) {
+            if (request == null || request.getUserId() == null || request.getPoemId() == null) {
+                return null;
+            }
+            ids.add(new UserPoemId(request.getUserId(), request.getPoemId()));
+        }
+        return ids;
+    }
+}
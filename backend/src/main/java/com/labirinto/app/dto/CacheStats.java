@@ -0,0 +1,59 @@
+package com.labirinto.app.dto;
+
+public class CacheStats {
+    private String name;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long entries;
+    private long sizeBytes;
+    private long maxSizeBytes;
+
+    public CacheStats() {
+    }
+
+    public CacheStats(String name, long hits, long misses, double hitRate, long evictions, long entries,
+            long sizeBytes, long maxSizeBytes) {
+        this.name = name;
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hitRate;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.sizeBytes = sizeBytes;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+}
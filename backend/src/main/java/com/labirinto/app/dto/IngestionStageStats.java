@@ -0,0 +1,47 @@
+package com.labirinto.app.dto;
+
+public class IngestionStageStats {
+    private String stage;
+    private long depth;
+    private long completed;
+    private long failed;
+    private double averageMillis;
+    private double maxMillis;
+
+    public IngestionStageStats() {
+    }
+
+    public IngestionStageStats(String stage, long depth, long completed, long failed, double averageMillis,
+            double maxMillis) {
+        this.stage = stage;
+        this.depth = depth;
+        this.completed = completed;
+        this.failed = failed;
+        this.averageMillis = averageMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getDepth() {
+        return depth;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public double getAverageMillis() {
+        return averageMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+}
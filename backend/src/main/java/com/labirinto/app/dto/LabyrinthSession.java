@@ -0,0 +1,33 @@
+package com.labirinto.app.dto;
+
+import java.util.List;
+
+/**
+ * Photos handed out by a labyrinth session and how many may still follow.
+ */
+public class LabyrinthSession {
+    private String sessionId;
+    private List<PhotoSummary> photos;
+    private int remaining;
+
+    public LabyrinthSession() {
+    }
+
+    public LabyrinthSession(String sessionId, List<PhotoSummary> photos, int remaining) {
+        this.sessionId = sessionId;
+        this.photos = photos;
+        this.remaining = remaining;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public List<PhotoSummary> getPhotos() {
+        return photos;
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+}
@@ -0,0 +1,10 @@
+package com.labirinto.app.dto;
+
+/**
+ * Projection of a photo on its perceptual hash.
+ */
+public interface PhotoHash {
+    Long getId();
+
+    Long getPerceptualHash();
+}
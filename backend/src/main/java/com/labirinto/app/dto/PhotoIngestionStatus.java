@@ -0,0 +1,38 @@
+package com.labirinto.app.dto;
+
+import com.labirinto.app.entities.PhotoStatus;
+
+public class PhotoIngestionStatus {
+    private Long id;
+    private PhotoStatus status;
+    private Long duplicateOf;
+
+    public PhotoIngestionStatus() {
+    }
+
+    public PhotoIngestionStatus(Long id, PhotoStatus status) {
+        this(id, status, null);
+    }
+
+    public PhotoIngestionStatus(Long id, PhotoStatus status, Long duplicateOf) {
+        this.id = id;
+        this.status = status;
+        this.duplicateOf = duplicateOf;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public PhotoStatus getStatus() {
+        return status;
+    }
+
+    public Long getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public String getStatusUrl() {
+        return "/api/photo/" + id + "/status";
+    }
+}
@@ -0,0 +1,60 @@
+package com.labirinto.app.dto;
+
+import java.util.List;
+
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.util.ColorPalette;
+import com.labirinto.app.util.ColorPalette.Swatch;
+
+/**
+ * Photo metadata without the image bytes, which are served only by
+ * {@code /api/photo/{id}/image}.
+ */
+public class PhotoSummary {
+    private Long id;
+    private String representativeColor;
+    private Integer width;
+    private Integer height;
+    // Encoded as stored on Photo, decoded only when serialized
+    private String palette;
+
+    public PhotoSummary() {
+    }
+
+    public PhotoSummary(Long id, String representativeColor, Integer width, Integer height, String palette) {
+        this.id = id;
+        this.representativeColor = representativeColor;
+        this.width = width;
+        this.height = height;
+        this.palette = palette;
+    }
+
+    public static PhotoSummary from(Photo photo) {
+        return new PhotoSummary(photo.getId(), photo.getRepresentativeColor(), photo.getWidth(), photo.getHeight(),
+                photo.getPalette());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRepresentativeColor() {
+        return representativeColor;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public List<Swatch> getPalette() {
+        return ColorPalette.decode(palette);
+    }
+
+    public String getImageUrl() {
+        return "/api/photo/" + id + "/image";
+    }
+}
@@ -0,0 +1,28 @@
+package com.labirinto.app.dto;
+
+public class PoemSearchResult {
+    private Long id;
+    private String title;
+    private double score;
+
+    public PoemSearchResult() {
+    }
+
+    public PoemSearchResult(Long id, String title, double score) {
+        this.id = id;
+        this.title = title;
+        this.score = score;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
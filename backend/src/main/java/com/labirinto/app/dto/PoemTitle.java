@@ -0,0 +1,10 @@
+package com.labirinto.app.dto;
+
+/**
+ * Projection of a poem without its text.
+ */
+public interface PoemTitle {
+    Long getId();
+
+    String getTitle();
+}
@@ -0,0 +1,48 @@
+package com.labirinto.app.dto;
+
+import java.util.List;
+
+/**
+ * Everything the client shows for a player: the user, the photos and poems
+ * they collected (metadata only) and the counts.
+ */
+public class UserDashboard {
+    private Long id;
+    private String username;
+    private List<PhotoSummary> photos;
+    private List<PoemTitle> poems;
+
+    public UserDashboard() {
+    }
+
+    public UserDashboard(Long id, String username, List<PhotoSummary> photos, List<PoemTitle> poems) {
+        this.id = id;
+        this.username = username;
+        this.photos = photos;
+        this.poems = poems;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<PhotoSummary> getPhotos() {
+        return photos;
+    }
+
+    public List<PoemTitle> getPoems() {
+        return poems;
+    }
+
+    public int getPhotoCount() {
+        return photos.size();
+    }
+
+    public int getPoemCount() {
+        return poems.size();
+    }
+}
@@ -1,10 +1,14 @@
 package com.labirinto.app.entities;
 
+import com.labirinto.app.util.ImageFormat;
+
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
+import jakarta.persistence.SequenceGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,11 +19,33 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class Photo {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequence with a pooled allocation so that bulk imports can batch their inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photo_seq")
+    @SequenceGenerator(name = "photo_seq", sequenceName = "photo_seq", allocationSize = 50)
     private Long id;
     
-    @Lob
-    private byte[] image;
-    
     private String representativeColor;
-}
\ No newline at end of file
+
+    // SHA-256 of the image bytes: key of the image in PhotoStorage and strong ETag
+    private String contentHash;
+
+    private Integer width;
+
+    private Integer height;
+
+    @Enumerated(EnumType.STRING)
+    private PhotoStatus status;
+
+    // 64-bit dHash of the image, see PerceptualHash and PhotoDuplicateIndex
+    private Long perceptualHash;
+
+    // The photo a DUPLICATE is a copy of
+    private Long duplicateOf;
+
+    // Main colors and their weights, encoded by ColorPalette
+    private String palette;
+
+    // Sniffed from the image bytes at ingest, gives the content type to serve
+    @Enumerated(EnumType.STRING)
+    private ImageFormat format;
+}
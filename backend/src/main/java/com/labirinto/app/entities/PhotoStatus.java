@@ -0,0 +1,13 @@
+package com.labirinto.app.entities;
+
+/**
+ * Processing state of an uploaded photo. Only READY photos are listed,
+ * indexed and served to the labyrinth.
+ */
+public enum PhotoStatus {
+    PENDING,
+    READY,
+    FAILED,
+    // Copy of the photo in duplicateOf: its image is not kept
+    DUPLICATE
+}
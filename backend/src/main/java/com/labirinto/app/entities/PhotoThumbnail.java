@@ -0,0 +1,87 @@
+package com.labirinto.app.entities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import com.labirinto.app.util.ImageFormat;
+
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhotoThumbnail {
+    @EmbeddedId
+    private PhotoThumbnailId id;
+
+    // Key of the thumbnail in PhotoStorage
+    private String contentHash;
+
+    // JPEG, or PNG for sources with transparency
+    @Enumerated(EnumType.STRING)
+    private ImageFormat format;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PhotoThumbnailId implements Serializable {
+        private Long photoId;
+
+        @Enumerated(EnumType.STRING)
+        private Size size;
+    }
+
+    /**
+     * Thumbnail sizes, expressed as the longest side in pixels. Precomputed
+     * sizes are rendered at ingest and stored as PhotoThumbnail rows; the
+     * others are rendered on first request and kept in the DerivativeCache.
+     */
+    public enum Size {
+        SMALL(160, true),
+        MEDIUM(480, true),
+        LARGE(1280, false);
+
+        private static final List<Size> PRECOMPUTED = Arrays.stream(values()).filter(Size::isPrecomputed).toList();
+
+        private final int maxSide;
+        private final boolean precomputed;
+
+        Size(int maxSide, boolean precomputed) {
+            this.maxSide = maxSide;
+            this.precomputed = precomputed;
+        }
+
+        public int getMaxSide() {
+            return maxSide;
+        }
+
+        public boolean isPrecomputed() {
+            return precomputed;
+        }
+
+        public static List<Size> precomputed() {
+            return PRECOMPUTED;
+        }
+
+        /**
+         * @return the size with the given name, ignoring case, or empty if
+         *         there is none
+         */
+        public static Optional<Size> fromName(String name) {
+            String upperCaseName = name.trim().toUpperCase(Locale.ROOT);
+            return Arrays.stream(values()).filter(size -> size.name().equals(upperCaseName)).findFirst();
+        }
+    }
+}
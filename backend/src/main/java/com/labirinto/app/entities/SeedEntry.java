@@ -0,0 +1,35 @@
+package com.labirinto.app.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Manifest row of the startup seed data: a source file, or a poem within
+ * poems.json, with the fingerprint it had when last synchronized.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeedEntry {
+    // Path relative to the seed directory ("images/img1.jpg"), or
+    // "poems.json#<title>" for a single poem
+    @Id
+    @Column(length = 1024)
+    private String source;
+
+    // Size in bytes and last modified time of a file; null for poems
+    private Long size;
+
+    private Long lastModified;
+
+    // SHA-256 of the file, or of the title and text of a poem
+    private String contentHash;
+
+    // Photo or Poem created from the source; null if none was (near duplicate photos)
+    private Long entityId;
+}
@@ -5,11 +5,17 @@ import java.io.Serializable;
 import jakarta.persistence.Embeddable;
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_user_poem_user_id", columnList = "user_id"),
+        @Index(name = "idx_user_poem_poem_id", columnList = "poem_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,80 +1,70 @@
 package com.labirinto.app.init;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
+import java.time.Instant;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.labirinto.app.entities.Photo;
-import com.labirinto.app.entities.Poem;
-import com.labirinto.app.repository.PhotoRepository;
-import com.labirinto.app.repository.PoemRepository;
-import com.labirinto.app.util.ColorExtractor;
+import com.labirinto.app.init.SeedSynchronizer.SyncResult;
+import com.labirinto.app.service.PhotoService;
 
 @Component
+@ConditionalOnProperty(name = "app.init.enabled", matchIfMissing = true)
 public class DbInit implements CommandLineRunner {
 
-    private final PoemRepository poetryRepository;
-    private final PhotoRepository photoRepository;
+    private final PhotoService photoService;
+    private final SeedSynchronizer seedSynchronizer;
+    private final JdbcTemplate jdbcTemplate;
 
-    @Value("${app.input-data-path:/static}")
-    private String inputDataDir;
-
-    public DbInit(PoemRepository poetryRepository, PhotoRepository photoRepository) {
-        this.poetryRepository = poetryRepository;
-        this.photoRepository = photoRepository;
+    public DbInit(PhotoService photoService, SeedSynchronizer seedSynchronizer, JdbcTemplate jdbcTemplate) {
+        this.photoService = photoService;
+        this.seedSynchronizer = seedSynchronizer;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Override
     public void run(String... args) throws Exception {
+        Instant start = Instant.now();
+        alignPhotoSequence();
+        photoService.migrateLegacyBlobs();
         loadPoems();
         loadPhotos();
+        photoService.backfill();
+        photoService.removeUnreferencedBlobs(start);
     }
 
-    private void loadPhotos() {
-        if (photoRepository.count() == 0) {
-            ClassPathResource inputDir = new ClassPathResource(inputDataDir + "/images");
-            System.out.println("Popolando DB con foto da " + inputDir.getFilename());
-            try {
-                Files.list(Paths.get(inputDir.getURI())).forEach(filePath -> {
-                    try {
-                        byte[] image = Files.readAllBytes(filePath);
-                        String representativeColor = ColorExtractor.extractRepresentativeColor(image);
-                        Photo photo = new Photo(null, image, representativeColor);
-                        photoRepository.save(photo);
-                    } catch (IOException e) {
-                        System.err.println("Errore nel caricamento della foto: " + filePath.getFileName());
-                    }
-                });
-            } catch (IOException e) {
-                System.err.println("Errore nell lettura della directory delle foto: " + e.getMessage());
-            }
-        } else {
-            System.out.println("DB già popolato CON foto, nessuna azione.");
+    // Photo ids used to come from an identity column: make sure the sequence
+    // that replaced it hands out ids past the ones already stored. Hibernate
+    // allocates ids in blocks of 50 ending at the value returned by the sequence.
+    private void alignPhotoSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM photo", Long.class);
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PHOTO_SEQ'", Long.class);
+        if (maxId != null && nextValue != null && nextValue < maxId + 50) {
+            jdbcTemplate.execute("ALTER SEQUENCE photo_seq RESTART WITH " + (maxId + 50));
+            System.out.println("Sequenza delle foto riallineata a " + (maxId + 50));
         }
     }
 
     private void loadPoems() throws IOException {
-        if (poetryRepository.count() == 0) {
-        ClassPathResource resource =
-        new ClassPathResource("static/poems.json");
-                    System.out.println("Popolando DB con dati iniziali...");
-            ObjectMapper mapper = new ObjectMapper();
-            List<Poem> poems = mapper.readValue(
-                Files.readString(resource.getFile().toPath()),
-                new TypeReference<List<Poem>>() {}
-            );
-            poetryRepository.saveAll(poems);
-        } else {
-            System.out.println("DB già popolato, nessuna azione.");
-        }
+        long start = System.nanoTime();
+        print("Poesie", seedSynchronizer.syncPoems(), start);
+    }
+
+    private void loadPhotos() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        print("Foto", seedSynchronizer.syncPhotos(), start);
     }
 
+    private static void print(String kind, SyncResult result, long start) {
+        System.out.printf("%s: %d aggiunte, %d aggiornate, %d rimosse, %d invariate in %d ms%n", kind,
+                result.added(), result.updated(), result.removed(), result.unchanged(),
+                (System.nanoTime() - start) / 1_000_000);
+        if (result.failed() > 0) {
+            System.err.println(kind + " non caricate: " + result.failed());
+        }
+    }
 }
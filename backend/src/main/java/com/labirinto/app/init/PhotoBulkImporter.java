@@ -0,0 +1,161 @@
+package com.labirinto.app.init;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.service.PhotoDuplicateIndex;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.service.PhotoService.PreparedPhoto;
+import com.labirinto.app.util.ThreadFactories;
+
+/**
+ * Imports a set of photos at startup, read as resources so that they can
+ * come from inside the packaged jar.
+ * <p>
+ * Reading, decoding, color extraction and thumbnails run on a fixed pool of
+ * workers (virtual threads when enabled, the CPU-bound part being handed to
+ * the ImageProcessingExecutor), while the calling thread stores the results
+ * in batches. At most {@code 2 * threads} photos are being prepared at any
+ * time, so only those plus the pending batch are held in memory, whatever
+ * the size of the set. Near duplicates of photos already stored, or of
+ * photos of the set prepared before them, are skipped before anything of
+ * them is written to the photo storage.
+ */
+@Component
+public class PhotoBulkImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoBulkImporter.class);
+
+    private final PhotoService photoService;
+    private final PhotoDuplicateIndex photoDuplicateIndex;
+
+    @Value("${app.import.threads:0}")
+    private int threads;
+
+    @Value("${app.import.batch-size:25}")
+    private int batchSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    public PhotoBulkImporter(PhotoService photoService, PhotoDuplicateIndex photoDuplicateIndex) {
+        this.photoService = photoService;
+        this.photoDuplicateIndex = photoDuplicateIndex;
+    }
+
+    public record ImportResult(int imported, int failed, int duplicates) {
+    }
+
+    /**
+     * Told the outcome of each source once stored: the saved photo, or null
+     * for a near duplicate that was skipped. Sources that could not be read
+     * are only counted as failed.
+     */
+    public interface ImportListener {
+        void imported(Resource source, Photo photo);
+    }
+
+    // A prepared photo and where it was read from
+    private record SourcedPhoto(Resource source, PreparedPhoto prepared) {
+    }
+
+    public ImportResult importResources(List<Resource> sources, ImportListener listener)
+            throws InterruptedException {
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int maxInFlight = 2 * workers;
+        ExecutorService executor = Executors.newFixedThreadPool(workers,
+                ThreadFactories.create("photo-import", virtualThreads));
+        CompletionService<SourcedPhoto> completion = new ExecutorCompletionService<>(executor);
+
+        long start = System.nanoTime();
+        int imported = 0;
+        int failed = 0;
+        int duplicates = 0;
+        int inFlight = 0;
+        List<SourcedPhoto> batch = new ArrayList<>(batchSize);
+        Iterator<Resource> pending = sources.iterator();
+        // Perceptual hashes of the photos of the set accepted so far, by source number
+        PhotoDuplicateIndex claimed = photoDuplicateIndex.detached();
+        AtomicLong sourceNumbers = new AtomicLong();
+        try {
+            while (pending.hasNext() || inFlight > 0) {
+                while (inFlight < maxInFlight && pending.hasNext()) {
+                    Resource source = pending.next();
+                    long sourceNumber = sourceNumbers.incrementAndGet();
+                    completion.submit(() -> {
+                        try {
+                            return new SourcedPhoto(source, photoService.prepare(source.getContentAsByteArray(),
+                                    hash -> claimed.addUnlessDuplicate(sourceNumber, hash).isEmpty()));
+                        } catch (Exception e) {
+                            // A photo that could not be stored does not hide its duplicates
+                            claimed.remove(sourceNumber);
+                            throw e;
+                        }
+                    });
+                    inFlight++;
+                }
+
+                Future<SourcedPhoto> done = completion.take();
+                inFlight--;
+                try {
+                    SourcedPhoto sourced = done.get();
+                    if (sourced.prepared().photo().getStatus() == PhotoStatus.DUPLICATE) {
+                        duplicates++;
+                        listener.imported(sourced.source(), null);
+                    } else {
+                        batch.add(sourced);
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                    logger.warn("Errore nel caricamento di una foto: {}", e.getCause().toString());
+                }
+
+                if (batch.size() >= batchSize || (!pending.hasNext() && inFlight == 0 && !batch.isEmpty())) {
+                    photoService.saveAll(batch.stream().map(SourcedPhoto::prepared).toList());
+                    for (SourcedPhoto sourced : batch) {
+                        Photo photo = sourced.prepared().photo();
+                        if (photo.getStatus() == PhotoStatus.READY) {
+                            photoDuplicateIndex.add(photo.getId(), photo.getPerceptualHash());
+                        }
+                        listener.imported(sourced.source(), photo);
+                    }
+                    imported += batch.size();
+                    batch.clear();
+                    logger.info("Importate {}/{} foto ({} foto/s)", imported, sources.size(),
+                            String.format("%.1f", throughput(imported, start)));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logger.info("Importazione completata: {} foto importate, {} duplicate, {} errori in {} ms ({} foto/s, {} thread)",
+                imported, duplicates, failed, (System.nanoTime() - start) / 1_000_000,
+                String.format("%.1f", throughput(imported, start)), workers);
+        return new ImportResult(imported, failed, duplicates);
+    }
+
+    // prepare() only knows the photos stored when it ran: check again against
+    // the index, which the batches saved since then have been added to, and
+    // against the pending batch
+    private static double throughput(int count, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return seconds > 0 ? count / seconds : 0;
+    }
+}
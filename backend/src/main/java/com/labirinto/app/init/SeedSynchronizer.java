@@ -0,0 +1,384 @@
+package com.labirinto.app.init;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.labirinto.app.entities.Poem;
+import com.labirinto.app.entities.SeedEntry;
+import com.labirinto.app.init.PhotoBulkImporter.ImportResult;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.repository.PoemRepository;
+import com.labirinto.app.repository.SeedEntryRepository;
+import com.labirinto.app.repository.UserPhotoRepository;
+import com.labirinto.app.service.PhotoDuplicateIndex;
+import com.labirinto.app.service.PhotoService;
+import com.labirinto.app.util.Hashing;
+
+/**
+ * Incremental synchronization of the seed data on the classpath
+ * ({@code poems.json} and the {@code images} directory under
+ * {@code app.input-data-path}) with the database.
+ * <p>
+ * Every source is recorded in a manifest of {@link SeedEntry} rows with its
+ * size, last modified time and SHA-256, and the poem or photo created from
+ * it. A file whose size and time are unchanged is not read at all, so a
+ * restart with unchanged data costs a listing and one query per kind. A file
+ * that did change is hashed: if the content is different, only the poems or
+ * the photo coming from it are inserted, updated or removed.
+ * <p>
+ * A poem whose title changed keeps its row, found by its text. A modified
+ * image is stored as a new photo and the users who had collected the old one
+ * are moved to it. The database changes of a synchronization are applied in
+ * one transaction; images are decoded outside of it.
+ * <p>
+ * Sources are read as streams, which works inside the packaged jar as well.
+ * Databases seeded before the manifest existed are adopted: poems are
+ * matched by title and photos by content hash, so nothing is imported twice.
+ */
+@Component
+public class SeedSynchronizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeedSynchronizer.class);
+
+    static final String POEMS = "poems.json";
+    static final String IMAGES = "images/";
+
+    private final SeedEntryRepository seedEntryRepository;
+    private final PoemRepository poemRepository;
+    private final PhotoRepository photoRepository;
+    private final PhotoService photoService;
+    private final PhotoBulkImporter photoBulkImporter;
+    private final PhotoDuplicateIndex photoDuplicateIndex;
+    private final UserPhotoRepository userPhotoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.input-data-path:/static}")
+    private String inputDataDir;
+
+    public SeedSynchronizer(SeedEntryRepository seedEntryRepository, PoemRepository poemRepository,
+            PhotoRepository photoRepository, PhotoService photoService, PhotoBulkImporter photoBulkImporter,
+            PhotoDuplicateIndex photoDuplicateIndex, UserPhotoRepository userPhotoRepository,
+            TransactionTemplate transactionTemplate) {
+        this.seedEntryRepository = seedEntryRepository;
+        this.poemRepository = poemRepository;
+        this.photoRepository = photoRepository;
+        this.photoService = photoService;
+        this.photoBulkImporter = photoBulkImporter;
+        this.photoDuplicateIndex = photoDuplicateIndex;
+        this.userPhotoRepository = userPhotoRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * What a synchronization changed. Images that turned out to be near
+     * duplicates count as added or updated; those that could not be read
+     * count as failed and are retried at the next start.
+     */
+    public record SyncResult(int added, int updated, int removed, int unchanged, int failed) {
+    }
+
+    // A poem of the file, its manifest source and hash, and the row it updates if any
+    private record PoemChange(String source, String hash, Poem poem, Optional<Poem> existing) {
+    }
+
+    public SyncResult syncPoems() throws IOException {
+        Resource file = resolver.getResource(location(POEMS));
+        if (!file.exists()) {
+            logger.warn("File delle poesie non trovato: {}", file.getDescription());
+            return new SyncResult(0, 0, 0, 0, 0);
+        }
+        SeedEntry fileEntry = seedEntryRepository.findById(POEMS).orElse(null);
+        Map<String, SeedEntry> tracked = bySource(seedEntryRepository.findBySourceStartingWith(POEMS + "#"));
+        if (fileEntry != null && isUnchanged(fileEntry, file)) {
+            return new SyncResult(0, 0, 0, tracked.size(), 0);
+        }
+        SeedEntry current = fingerprint(POEMS, file);
+        if (fileEntry != null && current.getContentHash().equals(fileEntry.getContentHash())) {
+            // Touched but not modified
+            seedEntryRepository.save(current);
+            return new SyncResult(0, 0, 0, tracked.size(), 0);
+        }
+
+        List<Poem> poems;
+        try (InputStream in = file.getInputStream()) {
+            poems = objectMapper.readValue(in, new TypeReference<List<Poem>>() {
+            });
+        }
+        return transactionTemplate.execute(status -> syncPoems(poems, current, tracked));
+    }
+
+    private SyncResult syncPoems(List<Poem> poems, SeedEntry current, Map<String, SeedEntry> tracked) {
+        Set<Long> trackedIds = tracked.values().stream().map(SeedEntry::getEntityId).collect(Collectors.toSet());
+        List<PoemChange> changes = new ArrayList<>();
+        List<PoemChange> untrackedChanges = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        int unchanged = 0;
+        for (Poem poem : poems) {
+            String title = Objects.toString(poem.getTitle(), "");
+            int occurrence = occurrences.merge(title, 1, Integer::sum);
+            String source = POEMS + "#" + title + (occurrence > 1 ? "#" + occurrence : "");
+            String hash = Hashing.sha256Hex((title + "\n" + poem.getText()).getBytes(StandardCharsets.UTF_8));
+            SeedEntry entry = tracked.remove(source);
+            if (entry == null) {
+                untrackedChanges.add(new PoemChange(source, hash, poem, Optional.empty()));
+            } else if (hash.equals(entry.getContentHash())) {
+                unchanged++;
+            } else {
+                changes.add(new PoemChange(source, hash, poem, entry.getEntityId() != null
+                        ? poemRepository.findById(entry.getEntityId())
+                        : Optional.empty()));
+            }
+        }
+
+        // A renamed poem is a source that disappeared and a new one with the
+        // same text: the poem is updated, so its id and its users are kept.
+        // Otherwise existing poems not in the manifest are adopted by title,
+        // for databases seeded before it.
+        List<SeedEntry> renamed = new ArrayList<>();
+        if (!untrackedChanges.isEmpty()) {
+            Map<Long, SeedEntry> removedByPoemId = tracked.values().stream()
+                    .filter(entry -> entry.getEntityId() != null)
+                    .collect(Collectors.toMap(SeedEntry::getEntityId, entry -> entry, (first, second) -> first));
+            Map<String, List<Poem>> removedByText = new HashMap<>();
+            poemRepository.findAllById(removedByPoemId.keySet()).forEach(poem -> removedByText
+                    .computeIfAbsent(poem.getText(), text -> new ArrayList<>()).add(poem));
+            Map<String, List<Poem>> untracked = null;
+            for (PoemChange change : untrackedChanges) {
+                List<Poem> sameText = removedByText.getOrDefault(change.poem().getText(), List.of());
+                Optional<Poem> existing;
+                if (!sameText.isEmpty()) {
+                    Poem poem = sameText.remove(0);
+                    renamed.add(tracked.remove(removedByPoemId.get(poem.getId()).getSource()));
+                    existing = Optional.of(poem);
+                } else {
+                    if (untracked == null) {
+                        untracked = untrackedPoemsByTitle(trackedIds);
+                    }
+                    List<Poem> sameTitle = untracked.getOrDefault(Objects.toString(change.poem().getTitle(), ""),
+                            List.of());
+                    existing = sameTitle.isEmpty() ? Optional.empty() : Optional.of(sameTitle.remove(0));
+                }
+                changes.add(new PoemChange(change.source(), change.hash(), change.poem(), existing));
+            }
+        }
+
+        List<Poem> toSave = new ArrayList<>();
+        Map<String, Poem> saved = new HashMap<>();
+        int added = 0;
+        int updated = 0;
+        for (PoemChange change : changes) {
+            Poem poem = change.poem();
+            Poem target;
+            if (change.existing().isPresent()) {
+                target = change.existing().get();
+                if (Objects.equals(target.getTitle(), poem.getTitle())
+                        && Objects.equals(target.getText(), poem.getText())) {
+                    unchanged++;
+                } else {
+                    target.setTitle(poem.getTitle());
+                    target.setText(poem.getText());
+                    toSave.add(target);
+                    updated++;
+                }
+            } else {
+                target = new Poem(null, poem.getTitle(), poem.getText());
+                toSave.add(target);
+                added++;
+            }
+            saved.put(change.source(), target);
+        }
+        poemRepository.saveAll(toSave);
+
+        List<SeedEntry> entries = new ArrayList<>();
+        for (PoemChange change : changes) {
+            entries.add(new SeedEntry(change.source(), null, null, change.hash(), saved.get(change.source()).getId()));
+        }
+        entries.add(current);
+        seedEntryRepository.deleteAll(renamed);
+        seedEntryRepository.saveAll(entries);
+
+        // Poems no longer in the file
+        for (SeedEntry entry : tracked.values()) {
+            if (entry.getEntityId() != null) {
+                poemRepository.deleteById(entry.getEntityId());
+            }
+            seedEntryRepository.delete(entry);
+        }
+        return new SyncResult(added, updated, tracked.size(), unchanged, 0);
+    }
+
+    public SyncResult syncPhotos() throws IOException, InterruptedException {
+        Resource directory = resolver.getResource(location(IMAGES));
+        if (!directory.exists()) {
+            logger.warn("Cartella delle foto non trovata: {}", directory.getDescription());
+            return new SyncResult(0, 0, 0, 0, 0);
+        }
+        Resource[] files = resolver.getResources(location(IMAGES + "*"));
+        Arrays.sort(files, Comparator.comparing(Resource::getFilename, Comparator.nullsFirst(String::compareTo)));
+        Map<String, SeedEntry> tracked = bySource(seedEntryRepository.findBySourceStartingWith(IMAGES));
+
+        List<SeedEntry> entries = new ArrayList<>();
+        List<Resource> toImport = new ArrayList<>();
+        Map<Resource, SeedEntry> pending = new HashMap<>();
+        Set<Resource> newFiles = new HashSet<>();
+        // Photos of modified images, by file, and the photos they are replaced with
+        Map<Resource, Long> replaced = new HashMap<>();
+        Map<Long, Long> replacements = new LinkedHashMap<>();
+        int unchanged = 0;
+        int updated = 0;
+        for (Resource file : files) {
+            if (file.getFilename() == null || file.getFilename().isEmpty() || !file.isReadable()) {
+                continue;
+            }
+            String source = IMAGES + file.getFilename();
+            SeedEntry entry = tracked.remove(source);
+            if (entry != null && isUnchanged(entry, file)) {
+                unchanged++;
+                continue;
+            }
+
+            SeedEntry current = fingerprint(source, file);
+            if (entry != null && current.getContentHash().equals(entry.getContentHash())) {
+                // Touched but not modified
+                current.setEntityId(entry.getEntityId());
+                entries.add(current);
+                unchanged++;
+                continue;
+            }
+            if (entry != null) {
+                updated++;
+            }
+
+            List<Long> existing = photoRepository.findIdsByContentHash(current.getContentHash());
+            if (!existing.isEmpty()) {
+                // Already stored, by a seeding that predates the manifest or by an upload
+                current.setEntityId(existing.get(0));
+                entries.add(current);
+                unchanged += entry == null ? 1 : 0;
+                if (entry != null && entry.getEntityId() != null) {
+                    replacements.put(entry.getEntityId(), existing.get(0));
+                }
+            } else {
+                toImport.add(file);
+                pending.put(file, current);
+                if (entry == null) {
+                    newFiles.add(file);
+                } else if (entry.getEntityId() != null) {
+                    replaced.put(file, entry.getEntityId());
+                }
+            }
+        }
+
+        int added = 0;
+        int failed = 0;
+        if (!toImport.isEmpty()) {
+            logger.info("Foto nuove o modificate da importare: {}", toImport.size());
+            // The index is otherwise only built once the application is ready.
+            // The photos about to be replaced or removed must not make their
+            // new versions near duplicates.
+            photoDuplicateIndex.rebuild();
+            replaced.values().forEach(photoDuplicateIndex::remove);
+            tracked.values().stream().map(SeedEntry::getEntityId).filter(Objects::nonNull)
+                    .forEach(photoDuplicateIndex::remove);
+            List<Resource> imported = new ArrayList<>();
+            ImportResult result = photoBulkImporter.importResources(toImport, (file, photo) -> {
+                SeedEntry entry = pending.get(file);
+                entry.setEntityId(photo != null ? photo.getId() : null);
+                entries.add(entry);
+                imported.add(file);
+                if (replaced.containsKey(file)) {
+                    replacements.put(replaced.get(file), entry.getEntityId());
+                }
+            });
+            added = (int) imported.stream().filter(newFiles::contains).count();
+            failed = result.failed();
+        }
+
+        // Images that failed to import keep their old photo and manifest row,
+        // and are retried at the next start
+        transactionTemplate.executeWithoutResult(status -> {
+            // Images no longer in the directory
+            for (SeedEntry entry : tracked.values()) {
+                deletePhoto(entry.getEntityId());
+                seedEntryRepository.delete(entry);
+            }
+            replacements.forEach(this::replacePhoto);
+            seedEntryRepository.saveAll(entries);
+        });
+        return new SyncResult(added, updated, tracked.size(), unchanged, failed);
+    }
+
+    // Users who collected the old version of a modified image get the new one
+    private void replacePhoto(Long photoId, Long replacementId) {
+        if (photoId.equals(replacementId)) {
+            return;
+        }
+        if (replacementId != null) {
+            userPhotoRepository.movePhotoLinks(photoId, replacementId);
+        }
+        deletePhoto(photoId);
+    }
+
+    private void deletePhoto(Long photoId) {
+        if (photoId != null) {
+            photoService.delete(photoId);
+        }
+    }
+
+    private Map<String, List<Poem>> untrackedPoemsByTitle(Set<Long> trackedIds) {
+        Map<String, List<Poem>> byTitle = new HashMap<>();
+        for (Poem poem : poemRepository.findAll()) {
+            if (!trackedIds.contains(poem.getId())) {
+                byTitle.computeIfAbsent(Objects.toString(poem.getTitle(), ""), title -> new ArrayList<>()).add(poem);
+            }
+        }
+        return byTitle;
+    }
+
+    private String location(String path) {
+        return "classpath:" + (inputDataDir.endsWith("/") ? inputDataDir : inputDataDir + "/") + path;
+    }
+
+    private static boolean isUnchanged(SeedEntry entry, Resource file) throws IOException {
+        return Objects.equals(entry.getSize(), file.contentLength())
+                && Objects.equals(entry.getLastModified(), file.lastModified());
+    }
+
+    private static SeedEntry fingerprint(String source, Resource file) throws IOException {
+        String hash;
+        try (InputStream in = file.getInputStream()) {
+            hash = Hashing.sha256Hex(in);
+        }
+        return new SeedEntry(source, file.contentLength(), file.lastModified(), hash, null);
+    }
+
+    private static Map<String, SeedEntry> bySource(List<SeedEntry> entries) {
+        return entries.stream().collect(Collectors.toMap(SeedEntry::getSource, entry -> entry));
+    }
+}
@@ -1,7 +1,111 @@
 package com.labirinto.app.repository;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.labirinto.app.config.CacheConfig;
+import com.labirinto.app.dto.PhotoHash;
+import com.labirinto.app.dto.PhotoIngestionStatus;
+import com.labirinto.app.dto.PhotoSummary;
 import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+
+// Photos are also written through the EntityManager, see PhotoService for the
+// matching cache evictions
+public interface PhotoRepository extends JpaRepository<Photo, Long> {
+
+    @Query("""
+                SELECT new com.labirinto.app.dto.PhotoSummary(p.id, p.representativeColor, p.width, p.height, p.palette)
+                FROM Photo p
+                WHERE p.status = com.labirinto.app.entities.PhotoStatus.READY
+            """)
+    List<PhotoSummary> findAllSummaries();
+
+    @Query("""
+                SELECT new com.labirinto.app.dto.PhotoSummary(p.id, p.representativeColor, p.width, p.height, p.palette)
+                FROM Photo p
+                WHERE p.status = com.labirinto.app.entities.PhotoStatus.READY
+                AND p.id > :after
+                ORDER BY p.id
+            """)
+    List<PhotoSummary> findSummariesAfter(@Param("after") Long after, Limit limit);
+
+    @Query("""
+                SELECT new com.labirinto.app.dto.PhotoSummary(p.id, p.representativeColor, p.width, p.height, p.palette)
+                FROM Photo p
+                WHERE p.id = :id
+                AND p.status = com.labirinto.app.entities.PhotoStatus.READY
+            """)
+    @Cacheable(cacheNames = CacheConfig.PHOTO_SUMMARIES, unless = "#result == null")
+    Optional<PhotoSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("SELECT p.id FROM Photo p WHERE p.status = com.labirinto.app.entities.PhotoStatus.READY ORDER BY p.id")
+    List<Long> findAllIds();
+
+    long countByStatus(PhotoStatus status);
+
+    @Query("SELECT p.id FROM Photo p WHERE p.status = :status")
+    List<Long> findIdsByStatus(@Param("status") PhotoStatus status);
+
+    @Query("SELECT new com.labirinto.app.dto.PhotoIngestionStatus(p.id, p.status, p.duplicateOf) FROM Photo p WHERE p.id = :id")
+    Optional<PhotoIngestionStatus> findIngestionStatusById(@Param("id") Long id);
+
+    @Query("""
+                SELECT p.id AS id, p.perceptualHash AS perceptualHash FROM Photo p
+                WHERE p.status = com.labirinto.app.entities.PhotoStatus.READY
+                AND p.perceptualHash IS NOT NULL
+            """)
+    List<PhotoHash> findPerceptualHashes();
+
+    List<Photo> findByFormatIsNullAndContentHashIsNotNull();
+
+    @Query("SELECT p.id FROM Photo p WHERE p.contentHash = :contentHash ORDER BY p.id")
+    List<Long> findIdsByContentHash(@Param("contentHash") String contentHash);
+
+    @Query("""
+                SELECT p.id FROM Photo p
+                WHERE p.status = com.labirinto.app.entities.PhotoStatus.READY
+                AND p.contentHash IS NOT NULL
+                AND (p.width IS NULL OR p.perceptualHash IS NULL OR p.palette IS NULL
+                    OR (SELECT COUNT(t) FROM PhotoThumbnail t WHERE t.id.photoId = p.id) < :sizes)
+            """)
+    List<Long> findIdsToBackfill(@Param("sizes") long sizes);
+
+    @CacheEvict(cacheNames = CacheConfig.PHOTO_SUMMARIES, key = "#id")
+    @Transactional
+    @Modifying
+    @Query("""
+                UPDATE Photo p SET p.width = :width, p.height = :height, p.perceptualHash = :perceptualHash,
+                    p.palette = :palette
+                WHERE p.id = :id
+            """)
+    void updateImageMetadata(@Param("id") Long id, @Param("width") Integer width, @Param("height") Integer height,
+            @Param("perceptualHash") Long perceptualHash, @Param("palette") String palette);
+
+    @CacheEvict(cacheNames = CacheConfig.PHOTO_SUMMARIES, key = "#id")
+    @Transactional
+    @Modifying
+    @Query("UPDATE Photo p SET p.status = :status WHERE p.id = :id")
+    void updateStatus(@Param("id") Long id, @Param("status") PhotoStatus status);
+
+    // Photos stored before statuses existed were always processed on upload
+    @CacheEvict(cacheNames = CacheConfig.PHOTO_SUMMARIES, allEntries = true)
+    @Transactional
+    @Modifying
+    @Query("UPDATE Photo p SET p.status = com.labirinto.app.entities.PhotoStatus.READY WHERE p.status IS NULL")
+    int markLegacyPhotosReady();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.PHOTO_SUMMARIES)
+    void deleteById(Long id);
 
-public interface PhotoRepository extends JpaRepository<Photo, Long> {}
+}
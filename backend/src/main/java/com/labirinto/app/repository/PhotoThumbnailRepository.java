@@ -0,0 +1,21 @@
+package com.labirinto.app.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.labirinto.app.entities.PhotoThumbnail;
+import com.labirinto.app.entities.PhotoThumbnail.PhotoThumbnailId;
+
+public interface PhotoThumbnailRepository extends JpaRepository<PhotoThumbnail, PhotoThumbnailId> {
+
+    List<PhotoThumbnail> findByFormatIsNullAndContentHashIsNotNull();
+
+    @Modifying
+    @Query("DELETE FROM PhotoThumbnail t WHERE t.id.photoId = :photoId")
+    void deleteByPhotoId(@Param("photoId") Long photoId);
+
+}
@@ -1,7 +1,35 @@
 package com.labirinto.app.repository;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import com.labirinto.app.config.CacheConfig;
 import com.labirinto.app.entities.Poem;
 
-public interface PoemRepository extends JpaRepository<Poem, Long> {}
+public interface PoemRepository extends JpaRepository<Poem, Long> {
+
+    // Keyset page of the poems with an id greater than the given one
+    <T> List<T> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit, Class<T> type);
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.POEMS, unless = "#result == null")
+    Optional<Poem> findById(Long id);
+
+    @Override
+    @CachePut(cacheNames = CacheConfig.POEMS, key = "#result.id")
+    <S extends Poem> S save(S poem);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.POEMS, allEntries = true)
+    <S extends Poem> List<S> saveAll(Iterable<S> poems);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.POEMS)
+    void deleteById(Long id);
+}
@@ -0,0 +1,12 @@
+package com.labirinto.app.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.labirinto.app.entities.SeedEntry;
+
+public interface SeedEntryRepository extends JpaRepository<SeedEntry, String> {
+
+    List<SeedEntry> findBySourceStartingWith(String prefix);
+}
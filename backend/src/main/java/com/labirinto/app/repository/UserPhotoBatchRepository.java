@@ -0,0 +1,29 @@
+package com.labirinto.app.repository;
+
+import java.util.Collection;
+
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+
+/**
+ * Bulk writes of user/photo links, each applied as one JDBC batch in a single
+ * transaction.
+ */
+public interface UserPhotoBatchRepository {
+
+    /**
+     * Inserts the links that do not exist yet; existing ones are left as they are.
+     */
+    void insertAllIfAbsent(Collection<UserPhotoId> ids);
+
+    /**
+     * Deletes the given links with a plain DELETE, without loading them first.
+     */
+    void deleteAllByIdDirectly(Collection<UserPhotoId> ids);
+
+    /**
+     * Moves every link to a photo over to another photo, for users who did not
+     * have the other photo already. Returns the number of links the first
+     * photo had.
+     */
+    int movePhotoLinks(Long fromPhotoId, Long toPhotoId);
+}
@@ -0,0 +1,63 @@
+package com.labirinto.app.repository;
+
+import java.util.Collection;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+
+class UserPhotoBatchRepositoryImpl implements UserPhotoBatchRepository {
+
+    // MERGE ... KEY makes the insert idempotent in a single statement
+    private static final String MERGE_SQL = "MERGE INTO user_photo (user_id, photo_id) KEY (user_id, photo_id) VALUES (?, ?)";
+    // Two transactions merging the same pair can both find it missing, and the
+    // one committing last fails on the primary key. The pair is then visible,
+    // so running the batch again is enough.
+    private static final int MAX_MERGE_ATTEMPTS = 3;
+    private static final String DELETE_SQL = "DELETE FROM user_photo WHERE user_id = ? AND photo_id = ?";
+    private static final String COPY_PHOTO_LINKS_SQL = "MERGE INTO user_photo (user_id, photo_id) KEY (user_id, photo_id) "
+            + "SELECT user_id, ? FROM user_photo WHERE photo_id = ?";
+    private static final String DELETE_PHOTO_LINKS_SQL = "DELETE FROM user_photo WHERE photo_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    UserPhotoBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void insertAllIfAbsent(Collection<UserPhotoId> ids) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                jdbcTemplate.batchUpdate(MERGE_SQL, ids, ids.size(), (statement, id) -> {
+                    statement.setLong(1, id.getUserId());
+                    statement.setLong(2, id.getPhotoId());
+                });
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_MERGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteAllByIdDirectly(Collection<UserPhotoId> ids) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids, ids.size(), (statement, id) -> {
+            statement.setLong(1, id.getUserId());
+            statement.setLong(2, id.getPhotoId());
+        });
+    }
+
+    @Override
+    @Transactional
+    public int movePhotoLinks(Long fromPhotoId, Long toPhotoId) {
+        jdbcTemplate.update(COPY_PHOTO_LINKS_SQL, toPhotoId, fromPhotoId);
+        return jdbcTemplate.update(DELETE_PHOTO_LINKS_SQL, fromPhotoId);
+    }
+}
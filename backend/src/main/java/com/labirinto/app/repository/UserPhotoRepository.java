@@ -2,30 +2,46 @@ package com.labirinto.app.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import com.labirinto.app.entities.Photo;
+import com.labirinto.app.dto.PhotoSummary;
 import com.labirinto.app.entities.UserPhoto;
 import com.labirinto.app.entities.UserPhoto.UserPhotoId;
 
-public interface UserPhotoRepository extends JpaRepository<UserPhoto, UserPhotoId> {
+public interface UserPhotoRepository extends JpaRepository<UserPhoto, UserPhotoId>, UserPhotoBatchRepository {
 
     @Query("""
-                SELECT p FROM Photo p
-                WHERE p.id NOT IN (
-                    SELECT up.id.photoId
-                    FROM UserPhoto up
-                    WHERE up.id.userId = :userId
-                )
-                AND (:excludedPhotoIds IS NULL OR p.id NOT IN :excludedPhotoIds)
+                SELECT u FROM UserPhoto u
+                WHERE u.id.userId > :userId
+                OR (u.id.userId = :userId AND u.id.photoId > :photoId)
+                ORDER BY u.id.userId, u.id.photoId
             """)
-    Page<Photo> findUncollectedWithExclusion(
-            @Param("userId") Long userId,
-            @Param("excludedPhotoIds") List<Long> excludedPhotoIds,
-            Pageable pageable);
+    List<UserPhoto> findAfter(@Param("userId") Long userId, @Param("photoId") Long photoId, Limit limit);
+
+    @Query("""
+                SELECT new com.labirinto.app.dto.PhotoSummary(p.id, p.representativeColor, p.width, p.height, p.palette)
+                FROM UserPhoto up
+                JOIN Photo p ON p.id = up.id.photoId
+                WHERE up.id.userId = :userId
+                AND p.status = com.labirinto.app.entities.PhotoStatus.READY
+                ORDER BY p.id
+            """)
+    List<PhotoSummary> findCollectedSummaries(@Param("userId") Long userId);
+
+    List<UserPhoto> findByIdUserId(Long userId);
+
+    Page<UserPhoto> findByIdUserId(Long userId, Pageable pageable);
+
+    List<UserPhoto> findByIdPhotoId(Long photoId);
+
+    Page<UserPhoto> findByIdPhotoId(Long photoId, Pageable pageable);
+
+    @Query("SELECT up.id FROM UserPhoto up")
+    List<UserPhotoId> findAllIds();
 
 }
@@ -0,0 +1,22 @@
+package com.labirinto.app.repository;
+
+import java.util.Collection;
+
+import com.labirinto.app.entities.UserPoem.UserPoemId;
+
+/**
+ * Bulk writes of user/poem links, each applied as one JDBC batch in a single
+ * transaction.
+ */
+public interface UserPoemBatchRepository {
+
+    /**
+     * Inserts the links that do not exist yet; existing ones are left as they are.
+     */
+    void insertAllIfAbsent(Collection<UserPoemId> ids);
+
+    /**
+     * Deletes the given links with a plain DELETE, without loading them first.
+     */
+    void deleteAllByIdDirectly(Collection<UserPoemId> ids);
+}
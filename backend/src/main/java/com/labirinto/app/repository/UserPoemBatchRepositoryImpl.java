@@ -0,0 +1,53 @@
+package com.labirinto.app.repository;
+
+import java.util.Collection;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.labirinto.app.entities.UserPoem.UserPoemId;
+
+class UserPoemBatchRepositoryImpl implements UserPoemBatchRepository {
+
+    // MERGE ... KEY makes the insert idempotent in a single statement
+    private static final String MERGE_SQL = "MERGE INTO user_poem (user_id, poem_id) KEY (user_id, poem_id) VALUES (?, ?)";
+    // Two transactions merging the same pair can both find it missing, and the
+    // one committing last fails on the primary key. The pair is then visible,
+    // so running the batch again is enough.
+    private static final int MAX_MERGE_ATTEMPTS = 3;
+    private static final String DELETE_SQL = "DELETE FROM user_poem WHERE user_id = ? AND poem_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    UserPoemBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void insertAllIfAbsent(Collection<UserPoemId> ids) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                jdbcTemplate.batchUpdate(MERGE_SQL, ids, ids.size(), (statement, id) -> {
+                    statement.setLong(1, id.getUserId());
+                    statement.setLong(2, id.getPoemId());
+                });
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_MERGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteAllByIdDirectly(Collection<UserPoemId> ids) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids, ids.size(), (statement, id) -> {
+            statement.setLong(1, id.getUserId());
+            statement.setLong(2, id.getPoemId());
+        });
+    }
+}
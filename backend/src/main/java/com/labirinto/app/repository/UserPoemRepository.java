@@ -1,8 +1,43 @@
 package com.labirinto.app.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.labirinto.app.dto.PoemTitle;
 import com.labirinto.app.entities.UserPoem;
 import com.labirinto.app.entities.UserPoem.UserPoemId;
 
-public interface UserPoemRepository extends JpaRepository<UserPoem, UserPoemId> {}
+public interface UserPoemRepository extends JpaRepository<UserPoem, UserPoemId>, UserPoemBatchRepository {
+
+    @Query("""
+                SELECT u FROM UserPoem u
+                WHERE u.id.userId > :userId
+                OR (u.id.userId = :userId AND u.id.poemId > :poemId)
+                ORDER BY u.id.userId, u.id.poemId
+            """)
+    List<UserPoem> findAfter(@Param("userId") Long userId, @Param("poemId") Long poemId, Limit limit);
+
+    @Query("""
+                SELECT p.id AS id, p.title AS title
+                FROM UserPoem up
+                JOIN Poem p ON p.id = up.id.poemId
+                WHERE up.id.userId = :userId
+                ORDER BY p.id
+            """)
+    List<PoemTitle> findCollectedTitles(@Param("userId") Long userId);
+
+    List<UserPoem> findByIdUserId(Long userId);
+
+    Page<UserPoem> findByIdUserId(Long userId, Pageable pageable);
+
+    List<UserPoem> findByIdPoemId(Long poemId);
+
+    Page<UserPoem> findByIdPoemId(Long poemId, Pageable pageable);
+
+}
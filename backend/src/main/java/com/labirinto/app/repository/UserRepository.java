@@ -1,7 +1,35 @@
 package com.labirinto.app.repository;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import com.labirinto.app.config.CacheConfig;
 import com.labirinto.app.entities.User;
 
-public interface UserRepository extends JpaRepository<User, Long> {}
+public interface UserRepository extends JpaRepository<User, Long> {
+
+    // Keyset page of the users with an id greater than the given one
+    List<User> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.USERS, unless = "#result == null")
+    Optional<User> findById(Long id);
+
+    @Override
+    @CachePut(cacheNames = CacheConfig.USERS, key = "#result.id")
+    <S extends User> S save(S user);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    <S extends User> List<S> saveAll(Iterable<S> users);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS)
+    void deleteById(Long id);
+}
@@ -0,0 +1,54 @@
+package com.labirinto.app.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits Italian text into normalized search terms.
+ * <p>
+ * Terms are lowercased and stripped of accents ("città" and "citta" match),
+ * elisions are split ("dell'ultimo" yields "ultimo") and common stopwords
+ * are dropped.
+ */
+public class ItalianAnalyzer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "ad", "al", "alla", "alle", "allo", "agli", "ai", "c", "che", "chi", "ci", "col", "con",
+            "d", "da", "dal", "dalla", "dalle", "dallo", "dagli", "dai", "de", "del", "dell", "della",
+            "delle", "dello", "degli", "dei", "di", "e", "ed", "gli", "i", "il", "in", "l", "la", "le",
+            "lo", "m", "ma", "mi", "ne", "nel", "nell", "nella", "nelle", "nello", "negli", "nei", "non",
+            "o", "per", "s", "se", "si", "su", "sul", "sull", "sulla", "sulle", "sullo", "sugli", "sui",
+            "t", "ti", "tra", "fra", "un", "una", "uno", "v", "vi");
+
+    private ItalianAnalyzer() {
+    }
+
+    /**
+     * @param text the text to analyze, may be null
+     * @return the search terms in order of appearance, duplicates included
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (!token.isEmpty() && !STOPWORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ITALIAN);
+    }
+}
@@ -0,0 +1,238 @@
+package com.labirinto.app.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.dto.PoemSearchResult;
+import com.labirinto.app.entities.Poem;
+import com.labirinto.app.repository.PoemRepository;
+
+/**
+ * In-memory inverted index over poem titles and texts.
+ * <p>
+ * Every query term must match, either exactly or as a prefix of an indexed
+ * term. Results are ranked with BM25, title matches weighing more than text
+ * matches and exact matches more than prefix ones. Queries never touch the
+ * database; the index is built once the application is ready and updated by
+ * the poem endpoints on every change.
+ */
+@Component
+public class PoemSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoemSearchIndex.class);
+
+    private static final double TITLE_BOOST = 3.0;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private final PoemRepository poemRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Map<Long, Posting>> postings = new TreeMap<>();
+    private final Map<Long, IndexedPoem> poems = new HashMap<>();
+    private long totalTitleLength;
+    private long totalTextLength;
+
+    private static class Posting {
+        int titleFrequency;
+        int textFrequency;
+    }
+
+    private record IndexedPoem(String title, String lowerCaseTitle, int titleLength, int textLength,
+            Set<String> terms) {
+    }
+
+    public PoemSearchIndex(PoemRepository poemRepository) {
+        this.poemRepository = poemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            poems.clear();
+            totalTitleLength = 0;
+            totalTextLength = 0;
+            poemRepository.findAll().forEach(this::add);
+            logger.info("Indice di ricerca costruito: {} poesie, {} termini", poems.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces a poem in the index.
+     */
+    public void index(Poem poem) {
+        lock.writeLock().lock();
+        try {
+            unindex(poem.getId());
+            add(poem);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long poemId) {
+        lock.writeLock().lock();
+        try {
+            unindex(poemId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches poems whose title or text contain all the terms of the query.
+     *
+     * @param query    free text; accents, case and stopwords are ignored
+     * @param pageable the page of results to return
+     * @return the matching poems, best first
+     */
+    public Page<PoemSearchResult> search(String query, Pageable pageable) {
+        Set<String> queryTerms = new LinkedHashSet<>(ItalianAnalyzer.analyze(query));
+        if (queryTerms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        List<PoemSearchResult> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String term : queryTerms) {
+                Map<Long, Double> termScores = scoreTerm(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return Page.empty(pageable);
+                }
+            }
+            scores.forEach((id, score) -> results.add(new PoemSearchResult(id, poems.get(id).title(), score)));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        results.sort(Comparator.comparingDouble(PoemSearchResult::getScore).reversed()
+                .thenComparing(PoemSearchResult::getId));
+        int from = (int) Math.min(pageable.getOffset(), results.size());
+        int to = Math.min(from + pageable.getPageSize(), results.size());
+        return new PageImpl<>(results.subList(from, to), pageable, results.size());
+    }
+
+    /**
+     * Ids of the poems whose title contains the string, ignoring case, in id
+     * order: a plain substring match, without analysis nor ranking.
+     */
+    public List<Long> findIdsByTitleContaining(String text) {
+        String lowerCaseText = text.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            return poems.entrySet().stream()
+                    .filter(entry -> entry.getValue().lowerCaseTitle() != null
+                            && entry.getValue().lowerCaseTitle().contains(lowerCaseText))
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreTerm(String term) {
+        Map<Long, Double> scores = new HashMap<>();
+        Map<Long, Posting> exact = postings.get(term);
+        if (exact != null) {
+            addScores(exact, 1.0, scores);
+        }
+        // Every expansion counts: as terms are combined with AND, skipping one
+        // would drop the poems only it matches from the results
+        for (Map<Long, Posting> prefixed : postings.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+            addScores(prefixed, PREFIX_WEIGHT, scores);
+        }
+        return scores;
+    }
+
+    private void addScores(Map<Long, Posting> termPostings, double weight, Map<Long, Double> scores) {
+        int documents = poems.size();
+        double idf = Math.log(1.0 + (documents - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+        double averageTitleLength = Math.max(1.0, (double) totalTitleLength / documents);
+        double averageTextLength = Math.max(1.0, (double) totalTextLength / documents);
+
+        termPostings.forEach((id, posting) -> {
+            IndexedPoem poem = poems.get(id);
+            double score = TITLE_BOOST * bm25(posting.titleFrequency, poem.titleLength(), averageTitleLength)
+                    + bm25(posting.textFrequency, poem.textLength(), averageTextLength);
+            // A poem matching several expansions of the same query term counts once
+            scores.merge(id, weight * idf * score, Math::max);
+        });
+    }
+
+    private static double bm25(int frequency, int length, double averageLength) {
+        if (frequency == 0) {
+            return 0.0;
+        }
+        double norm = BM25_K1 * (1.0 - BM25_B + BM25_B * length / averageLength);
+        return frequency * (BM25_K1 + 1.0) / (frequency + norm);
+    }
+
+    private void add(Poem poem) {
+        List<String> titleTerms = ItalianAnalyzer.analyze(poem.getTitle());
+        List<String> textTerms = ItalianAnalyzer.analyze(poem.getText());
+        for (String term : titleTerms) {
+            postings.computeIfAbsent(term, t -> new HashMap<>())
+                    .computeIfAbsent(poem.getId(), id -> new Posting()).titleFrequency++;
+        }
+        for (String term : textTerms) {
+            postings.computeIfAbsent(term, t -> new HashMap<>())
+                    .computeIfAbsent(poem.getId(), id -> new Posting()).textFrequency++;
+        }
+
+        Set<String> terms = new LinkedHashSet<>(titleTerms);
+        terms.addAll(textTerms);
+        String lowerCaseTitle = poem.getTitle() != null ? poem.getTitle().toLowerCase(Locale.ROOT) : null;
+        poems.put(poem.getId(), new IndexedPoem(poem.getTitle(), lowerCaseTitle, titleTerms.size(),
+                textTerms.size(), terms));
+        totalTitleLength += titleTerms.size();
+        totalTextLength += textTerms.size();
+    }
+
+    private void unindex(Long poemId) {
+        IndexedPoem poem = poems.remove(poemId);
+        if (poem == null) {
+            return;
+        }
+        for (String term : poem.terms()) {
+            Map<Long, Posting> termPostings = postings.get(term);
+            termPostings.remove(poemId);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalTitleLength -= poem.titleLength();
+        totalTextLength -= poem.textLength();
+    }
+}
@@ -0,0 +1,68 @@
+package com.labirinto.app.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.util.ThreadFactories;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Fixed pool of platform threads for the CPU-bound image work: decoding,
+ * color extraction and thumbnails.
+ * <p>
+ * Whoever needs that work (upload and import workers, thumbnail requests)
+ * hands it over here and waits for it. Image work therefore never uses more
+ * cores than the pool has threads. With virtual threads enabled it also
+ * stays off their carrier threads, where it would hold up every other
+ * request.
+ */
+@Component
+public class ImageProcessingExecutor {
+
+    private final ExecutorService executor;
+
+    public ImageProcessingExecutor(@Value("${app.image-processing.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = Executors.newFixedThreadPool(size, ThreadFactories.create("image-processing", false));
+    }
+
+    /**
+     * Runs the task on the pool and waits for its result.
+     */
+    public <T> T call(Callable<T> task) throws IOException {
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Elaborazione dell'immagine interrotta");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
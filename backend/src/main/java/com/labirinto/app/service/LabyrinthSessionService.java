@@ -0,0 +1,197 @@
+package com.labirinto.app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.labirinto.app.dto.LabyrinthSession;
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.entities.PhotoThumbnail.Size;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.service.PhotoService.StoredImage;
+import com.labirinto.app.util.ThreadFactories;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Labyrinth runs handing out the uncollected photos of a user one by one.
+ * <p>
+ * A session draws its photos at random from {@link PhotoCollectionIndex} and
+ * only remembers which ones it dealt, one bit per photo of the index, so the
+ * client never has to send back what it already got and a session weighs a
+ * few kilobytes however large the collection. Photos collected or deleted in
+ * the meantime are skipped when drawn. The large thumbnails of the first
+ * {@code app.labyrinth.prefetch} photos of a draw, shown when the photos are
+ * collected, are warmed in the background in the order the photos are
+ * returned: rendered if needed into the derivative cache.
+ * <p>
+ * Sessions live in memory, at most {@code app.labyrinth.max-sessions} of
+ * them; the least recently used one is dropped beyond that, and idle ones
+ * expire after {@code app.labyrinth.session-idle-timeout}.
+ */
+@Service
+public class LabyrinthSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LabyrinthSessionService.class);
+
+    private final PhotoCollectionIndex photoCollectionIndex;
+    private final PhotoRepository photoRepository;
+    private final PhotoService photoService;
+    private final long idleTimeoutNanos;
+    private final int prefetch;
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final Map<String, Session> sessions;
+
+    public LabyrinthSessionService(PhotoCollectionIndex photoCollectionIndex, PhotoRepository photoRepository,
+            PhotoService photoService,
+            @Value("${app.labyrinth.max-sessions:1000}") int maxSessions,
+            @Value("${app.labyrinth.session-idle-timeout:30m}") Duration idleTimeout,
+            @Value("${app.labyrinth.prefetch:5}") int prefetch,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.photoCollectionIndex = photoCollectionIndex;
+        this.photoRepository = photoRepository;
+        this.photoService = photoService;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.prefetch = prefetch;
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+        // Warming is best effort: when the workers fall behind new tasks are dropped
+        this.prefetchExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), ThreadFactories.create("labyrinth-prefetch", virtualThreads),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Starts a session for the user and draws its first photos.
+     */
+    public LabyrinthSession start(Long userId, int count) {
+        Session session = new Session(userId);
+        String sessionId = UUID.randomUUID().toString();
+        synchronized (sessions) {
+            removeExpired();
+            sessions.put(sessionId, session);
+        }
+        return draw(sessionId, session, count);
+    }
+
+    /**
+     * Draws the next photos of a session, empty if it does not exist or expired.
+     */
+    public Optional<LabyrinthSession> next(String sessionId, int count) {
+        Session session;
+        synchronized (sessions) {
+            session = sessions.get(sessionId);
+            if (session != null && session.isExpired(idleTimeoutNanos)) {
+                sessions.remove(sessionId);
+                session = null;
+            }
+        }
+        return Optional.ofNullable(session).map(found -> draw(sessionId, found, count));
+    }
+
+    public void end(String sessionId) {
+        synchronized (sessions) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private LabyrinthSession draw(String sessionId, Session session, int count) {
+        List<Long> photoIds = new ArrayList<>(count);
+        int remaining;
+        // Only the in-memory index is used under the lock, summaries are
+        // loaded once it is released
+        session.lock.lock();
+        try {
+            session.touch();
+            while (photoIds.size() < count) {
+                Optional<Long> photoId = photoCollectionIndex.deal(session.userId, session.dealt);
+                if (photoId.isEmpty()) {
+                    break;
+                }
+                if (photoCollectionIndex.isUncollected(session.userId, photoId.get())) {
+                    photoIds.add(photoId.get());
+                }
+            }
+            remaining = photoCollectionIndex.countUndealt(session.userId, session.dealt);
+        } finally {
+            session.lock.unlock();
+        }
+        if (prefetch > 0 && !photoIds.isEmpty()) {
+            List<Long> toWarm = List.copyOf(photoIds.subList(0, Math.min(prefetch, photoIds.size())));
+            prefetchExecutor.execute(() -> toWarm.forEach(this::warm));
+        }
+        List<PhotoSummary> photos = new ArrayList<>(photoIds.size());
+        photoIds.forEach(photoId -> photoRepository.findSummaryById(photoId).ifPresent(photos::add));
+        return new LabyrinthSession(sessionId, photos, remaining);
+    }
+
+    private void warm(Long photoId) {
+        try {
+            // Renders the large thumbnail shown when the photo is collected
+            // into the derivative cache, if not there yet
+            Optional<StoredImage> image = photoService.findThumbnail(photoId, Size.LARGE);
+            if (image.isPresent()) {
+                try (InputStream in = image.get().resource().getInputStream()) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Impossibile precaricare l'immagine della foto {}: {}", photoId, e.getMessage());
+        }
+    }
+
+    // Sessions are in access order, so the expired ones are at the head
+    private void removeExpired() {
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext() && iterator.next().isExpired(idleTimeoutNanos)) {
+            iterator.remove();
+        }
+    }
+
+    private static class Session {
+        private final Long userId;
+        // Slots of the photos handed out, see PhotoCollectionIndex.deal
+        private final BitSet dealt = new BitSet();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long lastAccess = System.nanoTime();
+
+        Session(Long userId) {
+            this.userId = userId;
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+
+        boolean isExpired(long idleTimeoutNanos) {
+            return System.nanoTime() - lastAccess > idleTimeoutNanos;
+        }
+    }
+}
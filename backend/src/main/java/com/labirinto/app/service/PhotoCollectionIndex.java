@@ -0,0 +1,299 @@
+package com.labirinto.app.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.repository.UserPhotoRepository;
+
+/**
+ * In-memory index of which photos every user has collected.
+ * <p>
+ * Each photo id is mapped to a dense slot and every user owns a {@link BitSet}
+ * over those slots, so picking a random uncollected photo never touches the
+ * database nor any image data. Picks use rejection sampling, which takes a
+ * constant number of attempts on average while a reasonable share of photos
+ * is still available, and fall back to a single scan of the bitset otherwise.
+ * <p>
+ * The index is built once the application is ready and must be kept in sync
+ * by the callers that add or remove photos and collected links.
+ */
+@Component
+public class PhotoCollectionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoCollectionIndex.class);
+
+    private static final int MAX_RANDOM_ATTEMPTS = 32;
+
+    private final PhotoRepository photoRepository;
+    private final UserPhotoRepository userPhotoRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] photoIds = new long[0];
+    private int slots;
+    private final Map<Long, Integer> slotByPhotoId = new HashMap<>();
+    // Slots of deleted photos, never reused until the next rebuild
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private final Map<Long, BitSet> collectedByUser = new HashMap<>();
+    private final Map<Long, Integer> collectedCountByUser = new HashMap<>();
+
+    public PhotoCollectionIndex(PhotoRepository photoRepository, UserPhotoRepository userPhotoRepository) {
+        this.photoRepository = photoRepository;
+        this.userPhotoRepository = userPhotoRepository;
+    }
+
+    /**
+     * Reloads the whole index from the database (ids only).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            List<Long> ids = photoRepository.findAllIds();
+            photoIds = new long[Math.max(16, ids.size())];
+            slots = 0;
+            slotByPhotoId.clear();
+            removed.clear();
+            removedCount = 0;
+            collectedByUser.clear();
+            collectedCountByUser.clear();
+            ids.forEach(this::appendPhoto);
+
+            List<UserPhotoId> links = userPhotoRepository.findAllIds();
+            links.forEach(link -> markCollected(link.getUserId(), link.getPhotoId()));
+            logger.info("Indice delle foto raccolte costruito: {} foto, {} raccolte", ids.size(), links.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addPhoto(Long photoId) {
+        lock.writeLock().lock();
+        try {
+            if (!slotByPhotoId.containsKey(photoId)) {
+                appendPhoto(photoId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removePhoto(Long photoId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByPhotoId.remove(photoId);
+            if (slot == null) {
+                return;
+            }
+            removed.set(slot);
+            removedCount++;
+            collectedByUser.forEach((userId, collected) -> {
+                if (collected.get(slot)) {
+                    collected.clear(slot);
+                    collectedCountByUser.merge(userId, -1, Integer::sum);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void collect(Long userId, Long photoId) {
+        lock.writeLock().lock();
+        try {
+            markCollected(userId, photoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void uncollect(Long userId, Long photoId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByPhotoId.get(photoId);
+            BitSet collected = collectedByUser.get(userId);
+            if (slot != null && collected != null && collected.get(slot)) {
+                collected.clear(slot);
+                collectedCountByUser.merge(userId, -1, Integer::sum);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Picks uniformly at random a photo the user has not collected yet.
+     *
+     * @param userId           the user
+     * @param excludedPhotoIds further photo ids to skip, may be null
+     * @return the id of the chosen photo, or empty if none is left
+     */
+    public Optional<Long> pickUncollected(Long userId, Collection<Long> excludedPhotoIds) {
+        Set<Long> excluded = excludedPhotoIds == null ? Set.of() : new HashSet<>(excludedPhotoIds);
+        lock.readLock().lock();
+        try {
+            BitSet collected = collectedByUser.getOrDefault(userId, new BitSet());
+            int live = slots - removedCount;
+            int available = live - collectedCountByUser.getOrDefault(userId, 0);
+            if (available <= 0) {
+                return Optional.empty();
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS; attempt++) {
+                int slot = random.nextInt(slots);
+                if (isCandidate(slot, collected, excluded)) {
+                    return Optional.of(photoIds[slot]);
+                }
+            }
+            return pickByScan(collected, excluded, random);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Picks uniformly at random a photo the user has not collected yet and
+     * whose slot is not set in {@code dealt}, then sets it. The bitset belongs
+     * to the caller but only this index knows what its bits mean: it lets a
+     * labyrinth session remember what it handed out with one bit per photo.
+     *
+     * @return the id of the chosen photo, or empty if none is left
+     */
+    public Optional<Long> deal(Long userId, BitSet dealt) {
+        lock.readLock().lock();
+        try {
+            BitSet collected = collectedByUser.getOrDefault(userId, new BitSet());
+            if (slots == 0) {
+                return Optional.empty();
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int chosen = -1;
+            for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS && chosen < 0; attempt++) {
+                int slot = random.nextInt(slots);
+                if (!removed.get(slot) && !collected.get(slot) && !dealt.get(slot)) {
+                    chosen = slot;
+                }
+            }
+            if (chosen < 0) {
+                // Reservoir sampling over the slots left, a word at a time
+                BitSet taken = (BitSet) collected.clone();
+                taken.or(removed);
+                taken.or(dealt);
+                int seen = 0;
+                for (int slot = taken.nextClearBit(0); slot < slots; slot = taken.nextClearBit(slot + 1)) {
+                    seen++;
+                    if (random.nextInt(seen) == 0) {
+                        chosen = slot;
+                    }
+                }
+            }
+            if (chosen < 0) {
+                return Optional.empty();
+            }
+            dealt.set(chosen);
+            return Optional.of(photoIds[chosen]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * How many photos {@link #deal} can still return for the user.
+     */
+    public int countUndealt(Long userId, BitSet dealt) {
+        lock.readLock().lock();
+        try {
+            BitSet collected = collectedByUser.getOrDefault(userId, new BitSet());
+            BitSet dealtAndFree = (BitSet) dealt.clone();
+            dealtAndFree.andNot(collected);
+            dealtAndFree.andNot(removed);
+            return slots - removedCount - collectedCountByUser.getOrDefault(userId, 0)
+                    - dealtAndFree.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the photo still exists and the user has not collected it.
+     */
+    public boolean isUncollected(Long userId, Long photoId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByPhotoId.get(photoId);
+            BitSet collected = collectedByUser.get(userId);
+            return slot != null && (collected == null || !collected.get(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Reservoir sampling over the free slots: uniform and still read-only
+    private Optional<Long> pickByScan(BitSet collected, Set<Long> excluded, ThreadLocalRandom random) {
+        long chosen = -1;
+        int seen = 0;
+        for (int slot = nextFreeSlot(collected, 0); slot < slots; slot = nextFreeSlot(collected, slot + 1)) {
+            if (excluded.contains(photoIds[slot])) {
+                continue;
+            }
+            seen++;
+            if (random.nextInt(seen) == 0) {
+                chosen = photoIds[slot];
+            }
+        }
+        return chosen < 0 ? Optional.empty() : Optional.of(chosen);
+    }
+
+    private int nextFreeSlot(BitSet collected, int from) {
+        int slot = collected.nextClearBit(from);
+        while (slot < slots && removed.get(slot)) {
+            slot = collected.nextClearBit(removed.nextClearBit(slot));
+        }
+        return Math.min(slot, slots);
+    }
+
+    private boolean isCandidate(int slot, BitSet collected, Set<Long> excluded) {
+        return !removed.get(slot) && !collected.get(slot) && !excluded.contains(photoIds[slot]);
+    }
+
+    private void appendPhoto(Long photoId) {
+        if (slots == photoIds.length) {
+            photoIds = Arrays.copyOf(photoIds, photoIds.length * 2);
+        }
+        photoIds[slots] = photoId;
+        slotByPhotoId.put(photoId, slots);
+        slots++;
+    }
+
+    private void markCollected(Long userId, Long photoId) {
+        Integer slot = slotByPhotoId.get(photoId);
+        if (slot == null) {
+            return;
+        }
+        BitSet collected = collectedByUser.computeIfAbsent(userId, id -> new BitSet());
+        if (!collected.get(slot)) {
+            collected.set(slot);
+            collectedCountByUser.merge(userId, 1, Integer::sum);
+        }
+    }
+}
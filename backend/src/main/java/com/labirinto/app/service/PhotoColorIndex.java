@@ -0,0 +1,327 @@
+package com.labirinto.app.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.util.ColorPalette.Swatch;
+import com.labirinto.app.util.LabColor;
+
+/**
+ * Nearest-color index over the representative colors and the palettes of all
+ * photos.
+ * <p>
+ * Colors are converted to CIE Lab and bucketed in a uniform grid of
+ * {@value #CELL_SIZE} ΔE units per side. A k-nearest query visits the grid in
+ * growing shells around the target cell and stops as soon as no unvisited
+ * cell can hold a closer color; a radius query visits only the cells that
+ * intersect the ΔE sphere. The index holds photo metadata, so results are
+ * returned without any database access.
+ * <p>
+ * Representative colors and palette colors live in two separate grids. A
+ * photo has one entry per palette color, with its weight, and is returned
+ * once, at the distance of its closest color heavy enough for the query.
+ */
+@Component
+public class PhotoColorIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoColorIndex.class);
+
+    private static final double CELL_SIZE = 10.0;
+    private static final int COORDINATE_OFFSET = 1 << 20;
+
+    private final PhotoRepository photoRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ColorGrid representativeColors = new ColorGrid();
+    private final ColorGrid paletteColors = new ColorGrid();
+
+    private record Entry(PhotoSummary photo, LabColor color, double weight) {
+    }
+
+    private record Match(PhotoSummary photo, double distance) {
+    }
+
+    public PhotoColorIndex(PhotoRepository photoRepository) {
+        this.photoRepository = photoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            representativeColors.clear();
+            paletteColors.clear();
+            photoRepository.findAllSummaries().forEach(this::insert);
+            logger.info("Indice dei colori costruito: {} foto in {} celle, {} con palette",
+                    representativeColors.photoCount(), representativeColors.cellCount(), paletteColors.photoCount());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(PhotoSummary photo) {
+        lock.writeLock().lock();
+        try {
+            delete(photo.getId());
+            insert(photo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long photoId) {
+        lock.writeLock().lock();
+        try {
+            delete(photoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param hexColor the target color, "#RRGGBB" or "RRGGBB"
+     * @param k        the maximum number of photos to return
+     * @return the k photos whose representative color is closest to the
+     *         color, closest first
+     */
+    public List<PhotoSummary> findNearest(String hexColor, int k) {
+        return findNearest(representativeColors, hexColor, k, 0);
+    }
+
+    /**
+     * @param minWeight the minimum share of the image a palette color must
+     *                  cover to be considered
+     * @return the k photos with a palette color closest to the color, closest
+     *         first
+     */
+    public List<PhotoSummary> findNearestInPalette(String hexColor, int k, double minWeight) {
+        return findNearest(paletteColors, hexColor, k, minWeight);
+    }
+
+    /**
+     * @param hexColor the target color, "#RRGGBB" or "RRGGBB"
+     * @param deltaE   the maximum CIE76 distance
+     * @return the photos whose representative color is within deltaE of the
+     *         color, closest first
+     */
+    public List<PhotoSummary> findWithin(String hexColor, double deltaE) {
+        return findWithin(representativeColors, hexColor, deltaE, 0);
+    }
+
+    /**
+     * @param minWeight the minimum share of the image a palette color must
+     *                  cover to be considered
+     * @return the photos with a palette color within deltaE of the color,
+     *         closest first
+     */
+    public List<PhotoSummary> findWithinPalette(String hexColor, double deltaE, double minWeight) {
+        return findWithin(paletteColors, hexColor, deltaE, minWeight);
+    }
+
+    private List<PhotoSummary> findNearest(ColorGrid grid, String hexColor, int k, double minWeight) {
+        LabColor target = LabColor.fromHex(hexColor);
+        PriorityQueue<Match> best = new PriorityQueue<>(Comparator.comparingDouble(Match::distance).reversed());
+        Map<Long, Match> bestByPhotoId = new HashMap<>();
+        if (k <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (grid.cells.isEmpty()) {
+                return List.of();
+            }
+            int[] center = cellOf(target);
+            int maxShell = grid.maxShell(center);
+            for (int shell = 0; shell <= maxShell; shell++) {
+                grid.visitShell(center, shell, entry -> {
+                    if (entry.weight() < minWeight) {
+                        return;
+                    }
+                    Match match = new Match(entry.photo(), entry.color().deltaE(target));
+                    Match current = bestByPhotoId.get(entry.photo().getId());
+                    if (current != null) {
+                        // Another color of a photo already among the best
+                        if (match.distance() < current.distance()) {
+                            best.remove(current);
+                            best.add(match);
+                            bestByPhotoId.put(entry.photo().getId(), match);
+                        }
+                    } else if (best.size() < k) {
+                        best.add(match);
+                        bestByPhotoId.put(entry.photo().getId(), match);
+                    } else if (match.distance() < best.peek().distance()) {
+                        bestByPhotoId.remove(best.poll().photo().getId());
+                        best.add(match);
+                        bestByPhotoId.put(entry.photo().getId(), match);
+                    }
+                });
+                // Every cell beyond this shell is at least shell * CELL_SIZE away
+                if (best.size() == k && best.peek().distance() <= shell * CELL_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return sorted(new ArrayList<>(best));
+    }
+
+    private List<PhotoSummary> findWithin(ColorGrid grid, String hexColor, double deltaE, double minWeight) {
+        LabColor target = LabColor.fromHex(hexColor);
+        Map<Long, Match> matches = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            if (grid.cells.isEmpty()) {
+                return List.of();
+            }
+            int[] center = cellOf(target);
+            // Shells past the occupied cells are empty, however large deltaE is
+            int shells = (int) Math.min(Math.ceil(deltaE / CELL_SIZE), grid.maxShell(center));
+            for (int shell = 0; shell <= shells; shell++) {
+                grid.visitShell(center, shell, entry -> {
+                    double distance = entry.color().deltaE(target);
+                    if (distance <= deltaE && entry.weight() >= minWeight) {
+                        matches.merge(entry.photo().getId(), new Match(entry.photo(), distance),
+                                (first, second) -> first.distance() <= second.distance() ? first : second);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return sorted(new ArrayList<>(matches.values()));
+    }
+
+    private void insert(PhotoSummary photo) {
+        if (photo.getRepresentativeColor() == null) {
+            return;
+        }
+        LabColor color;
+        try {
+            color = LabColor.fromHex(photo.getRepresentativeColor());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Colore della foto {} non valido: {}", photo.getId(), photo.getRepresentativeColor());
+            return;
+        }
+        representativeColors.insert(new Entry(photo, color, 1));
+        for (Swatch swatch : photo.getPalette()) {
+            paletteColors.insert(new Entry(photo, LabColor.fromHex(swatch.color()), swatch.weight()));
+        }
+    }
+
+    private void delete(Long photoId) {
+        representativeColors.delete(photoId);
+        paletteColors.delete(photoId);
+    }
+
+    private static List<PhotoSummary> sorted(List<Match> matches) {
+        matches.sort(Comparator.comparingDouble(Match::distance));
+        return matches.stream().map(Match::photo).toList();
+    }
+
+    private static int[] cellOf(LabColor color) {
+        return new int[] {
+                (int) Math.floor(color.l() / CELL_SIZE),
+                (int) Math.floor(color.a() / CELL_SIZE),
+                (int) Math.floor(color.b() / CELL_SIZE)
+        };
+    }
+
+    private static long key(int l, int a, int b) {
+        return ((long) (l + COORDINATE_OFFSET) << 42)
+                | ((long) (a + COORDINATE_OFFSET) << 21)
+                | (b + COORDINATE_OFFSET);
+    }
+
+    // Grid cells and their bounds; guarded by the index lock
+    private static final class ColorGrid {
+        final Map<Long, List<Entry>> cells = new HashMap<>();
+        final Map<Long, List<Long>> cellsByPhotoId = new HashMap<>();
+        final int[] minCell = new int[3];
+        final int[] maxCell = new int[3];
+
+        void clear() {
+            cells.clear();
+            cellsByPhotoId.clear();
+        }
+
+        int photoCount() {
+            return cellsByPhotoId.size();
+        }
+
+        int cellCount() {
+            return cells.size();
+        }
+
+        // The last shell around the center that still intersects the occupied cells
+        int maxShell(int[] center) {
+            int maxShell = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                maxShell = Math.max(maxShell, Math.max(center[axis] - minCell[axis], maxCell[axis] - center[axis]));
+            }
+            return maxShell;
+        }
+
+        void insert(Entry entry) {
+            int[] cell = cellOf(entry.color());
+            long key = key(cell[0], cell[1], cell[2]);
+            cells.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+            boolean first = cellsByPhotoId.isEmpty();
+            for (int axis = 0; axis < 3; axis++) {
+                minCell[axis] = first ? cell[axis] : Math.min(minCell[axis], cell[axis]);
+                maxCell[axis] = first ? cell[axis] : Math.max(maxCell[axis], cell[axis]);
+            }
+            cellsByPhotoId.computeIfAbsent(entry.photo().getId(), id -> new ArrayList<>(1)).add(key);
+        }
+
+        void delete(Long photoId) {
+            List<Long> keys = cellsByPhotoId.remove(photoId);
+            if (keys == null) {
+                return;
+            }
+            for (Long key : keys) {
+                List<Entry> entries = cells.get(key);
+                if (entries == null) {
+                    continue;
+                }
+                entries.removeIf(entry -> entry.photo().getId().equals(photoId));
+                if (entries.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        void visitShell(int[] center, int shell, Consumer<Entry> visitor) {
+            for (int dl = -shell; dl <= shell; dl++) {
+                for (int da = -shell; da <= shell; da++) {
+                    boolean onFace = Math.abs(dl) == shell || Math.abs(da) == shell;
+                    // Inside the shell only the two caps along the b axis are on its surface
+                    int step = onFace ? 1 : Math.max(1, 2 * shell);
+                    for (int db = -shell; db <= shell; db += step) {
+                        List<Entry> entries = cells.get(key(center[0] + dl, center[1] + da, center[2] + db));
+                        if (entries != null) {
+                            entries.forEach(visitor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.labirinto.app.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.util.PerceptualHash;
+
+/**
+ * Near-duplicate index over the perceptual hashes of all READY photos.
+ * <p>
+ * Multi-index hashing: every 64-bit hash is split into {@value #CHUNKS}
+ * chunks of {@value #CHUNK_BITS} bits, and each chunk is indexed in its own
+ * table. Two hashes at most {@code app.duplicates.max-distance} bits apart
+ * differ in at most {@code max-distance / CHUNKS} bits on at least one
+ * chunk. A lookup therefore only visits the buckets within that many bits
+ * of the target's chunks, a few dozen buckets of a handful of photos each
+ * even at a million photos, instead of comparing every hash.
+ * <p>
+ * The index is built once the application is ready and must be kept in sync
+ * by the callers that add or remove photos.
+ */
+@Component
+public class PhotoDuplicateIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoDuplicateIndex.class);
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final PhotoRepository photoRepository;
+    private final int maxDistance;
+    // Chunk values within the search radius of a chunk are the ones obtained
+    // by flipping its bits with these masks
+    private final int[] flipMasks;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Dense slots; a removed entry is replaced by the last one
+    private long[] hashes = new long[16];
+    private long[] photoIds = new long[16];
+    private int size;
+    private final Map<Long, Integer> slotByPhotoId = new HashMap<>();
+    // For each chunk and chunk value, the slots of the matching entries, as
+    // {count, slot, slot, ...}
+    private final int[][][] buckets = new int[CHUNKS][1 << CHUNK_BITS][];
+
+    public PhotoDuplicateIndex(PhotoRepository photoRepository,
+            @Value("${app.duplicates.max-distance:6}") int maxDistance) {
+        this.photoRepository = photoRepository;
+        this.maxDistance = maxDistance;
+        int chunkRadius = Math.max(0, maxDistance) / CHUNKS;
+        this.flipMasks = IntStream.rangeClosed(0, CHUNK_MASK)
+                .filter(mask -> Integer.bitCount(mask) <= chunkRadius).toArray();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            slotByPhotoId.clear();
+            for (int[][] table : buckets) {
+                Arrays.fill(table, null);
+            }
+            photoRepository.findPerceptualHashes().forEach(photo -> insert(photo.getId(), photo.getPerceptualHash()));
+            logger.info("Indice dei duplicati costruito: {} foto", size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A new empty index with the same maximum distance, for photos that are
+     * not stored yet. It is neither built from nor kept in sync with the
+     * database; ids are up to the caller.
+     */
+    public PhotoDuplicateIndex detached() {
+        return new PhotoDuplicateIndex(photoRepository, maxDistance);
+    }
+
+    /**
+     * @return the indexed photo closest to the hash, if within the maximum distance
+     */
+    public Optional<Long> findDuplicate(long hash) {
+        lock.readLock().lock();
+        try {
+            return nearest(hash);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the photo unless a near duplicate is already indexed, in which case
+     * that one is returned. Check and insertion are atomic, so of two copies
+     * processed at the same time only one gets in.
+     */
+    public Optional<Long> addUnlessDuplicate(Long photoId, long hash) {
+        lock.writeLock().lock();
+        try {
+            Optional<Long> duplicate = nearest(hash).filter(id -> !id.equals(photoId));
+            if (duplicate.isEmpty()) {
+                delete(photoId);
+                insert(photoId, hash);
+            }
+            return duplicate;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(Long photoId, long hash) {
+        lock.writeLock().lock();
+        try {
+            delete(photoId);
+            insert(photoId, hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long photoId) {
+        lock.writeLock().lock();
+        try {
+            delete(photoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isDuplicate(long first, long second) {
+        return PerceptualHash.distance(first, second) <= maxDistance;
+    }
+
+    private Optional<Long> nearest(long hash) {
+        int bestSlot = -1;
+        int bestDistance = maxDistance + 1;
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int value = chunk(hash, chunk);
+            for (int mask : flipMasks) {
+                int[] bucket = buckets[chunk][value ^ mask];
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 1; i <= bucket[0]; i++) {
+                    int slot = bucket[i];
+                    int distance = PerceptualHash.distance(hash, hashes[slot]);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        bestSlot = slot;
+                    }
+                }
+            }
+        }
+        return bestSlot >= 0 ? Optional.of(photoIds[bestSlot]) : Optional.empty();
+    }
+
+    private void insert(Long photoId, long hash) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            photoIds = Arrays.copyOf(photoIds, size * 2);
+        }
+        int slot = size++;
+        hashes[slot] = hash;
+        photoIds[slot] = photoId;
+        slotByPhotoId.put(photoId, slot);
+        link(slot);
+    }
+
+    private void delete(Long photoId) {
+        Integer slot = slotByPhotoId.remove(photoId);
+        if (slot == null) {
+            return;
+        }
+        unlink(slot);
+        int last = --size;
+        if (slot != last) {
+            unlink(last);
+            hashes[slot] = hashes[last];
+            photoIds[slot] = photoIds[last];
+            slotByPhotoId.put(photoIds[slot], slot);
+            link(slot);
+        }
+    }
+
+    private void link(int slot) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int value = chunk(hashes[slot], chunk);
+            int[] bucket = buckets[chunk][value];
+            if (bucket == null) {
+                bucket = new int[4];
+            } else if (bucket[0] + 1 == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            }
+            bucket[++bucket[0]] = slot;
+            buckets[chunk][value] = bucket;
+        }
+    }
+
+    private void unlink(int slot) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int[] bucket = buckets[chunk][chunk(hashes[slot], chunk)];
+            for (int i = 1; i <= bucket[0]; i++) {
+                if (bucket[i] == slot) {
+                    bucket[i] = bucket[bucket[0]--];
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int chunk(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & CHUNK_MASK;
+    }
+}
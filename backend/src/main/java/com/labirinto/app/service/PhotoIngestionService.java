@@ -0,0 +1,268 @@
+package com.labirinto.app.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.labirinto.app.dto.IngestionStageStats;
+import com.labirinto.app.dto.PhotoIngestionStatus;
+import com.labirinto.app.dto.PhotoSummary;
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.service.PhotoService.PreparedPhoto;
+import com.labirinto.app.util.ThreadFactories;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Asynchronous processing of uploaded photos.
+ * <p>
+ * An upload only reserves a PENDING photo and moves the multipart file into a
+ * staging directory; decoding, color extraction, thumbnails and storage run
+ * on a fixed pool of workers fed by a bounded queue. Near duplicates of a
+ * photo already stored end up DUPLICATE, linked to it. When the queue is full
+ * new uploads are refused instead of piling up on the heap. Pending uploads
+ * left over by a restart are picked up again at startup.
+ */
+@Service
+public class PhotoIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoIngestionService.class);
+
+    public enum Stage {
+        UPLOAD, QUEUE, PROCESS, STORE
+    }
+
+    private final PhotoService photoService;
+    private final PhotoRepository photoRepository;
+    private final PhotoCollectionIndex photoCollectionIndex;
+    private final PhotoColorIndex photoColorIndex;
+    private final PhotoDuplicateIndex photoDuplicateIndex;
+    private final Path stagingDir;
+    private final ThreadPoolExecutor executor;
+    private final Map<Stage, StageStats> stats = new EnumMap<>(Stage.class);
+
+    public PhotoIngestionService(PhotoService photoService, PhotoRepository photoRepository,
+            PhotoCollectionIndex photoCollectionIndex, PhotoColorIndex photoColorIndex,
+            PhotoDuplicateIndex photoDuplicateIndex,
+            @Value("${app.ingestion.staging-dir:${java.io.tmpdir}/labirinto-uploads}") String stagingDir,
+            @Value("${app.ingestion.threads:2}") int threads,
+            @Value("${app.ingestion.queue-capacity:100}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) throws IOException {
+        this.photoService = photoService;
+        this.photoRepository = photoRepository;
+        this.photoCollectionIndex = photoCollectionIndex;
+        this.photoColorIndex = photoColorIndex;
+        this.photoDuplicateIndex = photoDuplicateIndex;
+        this.stagingDir = Files.createDirectories(Paths.get(stagingDir));
+
+        // The decoding itself runs on the ImageProcessingExecutor: the workers
+        // only wait for it and for I/O, so they can be virtual threads
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), ThreadFactories.create("photo-ingestion", virtualThreads));
+        for (Stage stage : Stage.values()) {
+            stats.put(stage, new StageStats());
+        }
+    }
+
+    /**
+     * Stages the upload and queues it for processing. Returns empty when the
+     * queue is full.
+     */
+    public Optional<PhotoIngestionStatus> submit(MultipartFile upload) throws IOException {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            return Optional.empty();
+        }
+
+        Long id = photoService.createPending().getId();
+        Path staged = stagingFile(id);
+        StageStats uploadStats = stats.get(Stage.UPLOAD);
+        long start = uploadStats.begin();
+        try {
+            upload.transferTo(staged);
+            uploadStats.end(start, true);
+        } catch (IOException | RuntimeException e) {
+            uploadStats.end(start, false);
+            discard(id, staged);
+            throw e;
+        }
+
+        if (!enqueue(id, staged)) {
+            discard(id, staged);
+            return Optional.empty();
+        }
+        return Optional.of(new PhotoIngestionStatus(id, PhotoStatus.PENDING));
+    }
+
+    public Optional<PhotoIngestionStatus> getStatus(Long id) {
+        return photoRepository.findIngestionStatusById(id);
+    }
+
+    public List<IngestionStageStats> getStats() {
+        List<IngestionStageStats> result = new ArrayList<>();
+        stats.forEach((stage, stageStats) -> result.add(stageStats.snapshot(stage)));
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        List<Long> ids = photoRepository.findIdsByStatus(PhotoStatus.PENDING);
+        int resumed = 0;
+        for (Long id : ids) {
+            Path staged = stagingFile(id);
+            if (Files.exists(staged) && enqueue(id, staged)) {
+                resumed++;
+            } else {
+                photoRepository.updateStatus(id, PhotoStatus.FAILED);
+            }
+        }
+        if (!ids.isEmpty()) {
+            logger.info("Ripresa l'elaborazione di {} foto in sospeso, {} fallite", resumed, ids.size() - resumed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean enqueue(Long id, Path staged) {
+        StageStats queueStats = stats.get(Stage.QUEUE);
+        long enqueued = queueStats.begin();
+        try {
+            executor.execute(() -> {
+                queueStats.end(enqueued, true);
+                process(id, staged);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queueStats.end(enqueued, false);
+            return false;
+        }
+    }
+
+    private void process(Long id, Path staged) {
+        try {
+            StageStats processStats = stats.get(Stage.PROCESS);
+            long start = processStats.begin();
+            PreparedPhoto prepared;
+            try {
+                prepared = photoService.prepare(Files.readAllBytes(staged));
+                processStats.end(start, prepared.photo().getStatus() != PhotoStatus.FAILED);
+            } catch (IOException | RuntimeException e) {
+                processStats.end(start, false);
+                throw e;
+            }
+
+            if (prepared.photo().getStatus() == PhotoStatus.FAILED) {
+                logger.warn("Foto {} non elaborata: immagine non leggibile", id);
+                photoRepository.updateStatus(id, PhotoStatus.FAILED);
+                return;
+            }
+            if (prepared.photo().getStatus() == PhotoStatus.READY) {
+                // A copy of a photo still being processed is not in the index
+                // yet: the check is repeated while claiming the hash
+                Long perceptualHash = prepared.photo().getPerceptualHash();
+                Optional<Long> original = photoDuplicateIndex.addUnlessDuplicate(id, perceptualHash);
+                if (original.isPresent()) {
+                    prepared = PreparedPhoto.duplicate(perceptualHash, original.get());
+                }
+            }
+            if (prepared.photo().getStatus() == PhotoStatus.DUPLICATE) {
+                logger.info("Foto {} scartata: copia della foto {}", id, prepared.photo().getDuplicateOf());
+            }
+
+            StageStats storeStats = stats.get(Stage.STORE);
+            start = storeStats.begin();
+            try {
+                Optional<Photo> completed = photoService.complete(id, prepared);
+                completed.filter(photo -> photo.getStatus() == PhotoStatus.READY).map(PhotoSummary::from)
+                        .ifPresent(photo -> {
+                            photoCollectionIndex.addPhoto(photo.getId());
+                            photoColorIndex.add(photo);
+                        });
+                if (completed.isEmpty()) {
+                    photoDuplicateIndex.remove(id);
+                }
+                storeStats.end(start, true);
+            } catch (RuntimeException e) {
+                storeStats.end(start, false);
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Errore nell'elaborazione della foto {}: {}", id, e.toString());
+            photoDuplicateIndex.remove(id);
+            photoRepository.updateStatus(id, PhotoStatus.FAILED);
+        } finally {
+            deleteQuietly(staged);
+        }
+    }
+
+    private void discard(Long id, Path staged) {
+        deleteQuietly(staged);
+        photoRepository.deleteById(id);
+    }
+
+    private Path stagingFile(Long id) {
+        return stagingDir.resolve(id + ".upload");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Impossibile eliminare il file temporaneo {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Items currently in a stage and latency of the ones that left it.
+     */
+    private static class StageStats {
+        private final AtomicLong depth = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        long begin() {
+            depth.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        void end(long start, boolean success) {
+            long elapsed = System.nanoTime() - start;
+            depth.decrementAndGet();
+            (success ? completed : failed).incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+
+        IngestionStageStats snapshot(Stage stage) {
+            long done = completed.get() + failed.get();
+            double averageMillis = done > 0 ? totalNanos.get() / 1e6 / done : 0;
+            return new IngestionStageStats(stage.name(), depth.get(), completed.get(), failed.get(), averageMillis,
+                    maxNanos.get() / 1e6);
+        }
+    }
+}
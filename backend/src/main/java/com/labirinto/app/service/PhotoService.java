@@ -0,0 +1,592 @@
+package com.labirinto.app.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.labirinto.app.config.CacheConfig;
+import com.labirinto.app.entities.Photo;
+import com.labirinto.app.entities.PhotoStatus;
+import com.labirinto.app.entities.PhotoThumbnail;
+import com.labirinto.app.entities.PhotoThumbnail.PhotoThumbnailId;
+import com.labirinto.app.entities.PhotoThumbnail.Size;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.repository.PhotoThumbnailRepository;
+import com.labirinto.app.storage.DerivativeCache;
+import com.labirinto.app.storage.PhotoStorage;
+import com.labirinto.app.util.ColorExtractor;
+import com.labirinto.app.util.ColorExtractor.ColorAnalysis;
+import com.labirinto.app.util.ColorPalette;
+import com.labirinto.app.util.ImageDecoder;
+import com.labirinto.app.util.ImageDecoder.DecodedImage;
+import com.labirinto.app.util.ImageFormat;
+import com.labirinto.app.util.PerceptualHash;
+import com.labirinto.app.util.ThumbnailGenerator;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Photo ingestion and image serving.
+ * <p>
+ * Image and thumbnail bytes live in {@link PhotoStorage}, keyed by their
+ * content hash; the database only keeps the hashes and the metadata. Blobs
+ * are shared between identical images and are not deleted together with a
+ * photo: unreferenced ones are swept at startup. Thumbnails too large to be
+ * worth precomputing are rendered on demand into the {@link DerivativeCache}.
+ */
+@Service
+public class PhotoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoService.class);
+
+    private static final String REFERENCED_HASHES_SQL = """
+                SELECT content_hash FROM photo WHERE content_hash IS NOT NULL
+                UNION
+                SELECT content_hash FROM photo_thumbnail WHERE content_hash IS NOT NULL
+            """;
+
+    // Images are decoded subsampled to at least twice the largest precomputed
+    // thumbnail, which is plenty for both the thumbnails and the color extraction
+    private static final int PREVIEW_LONG_SIDE = 2 * Size.MEDIUM.getMaxSide();
+
+    private final PhotoRepository photoRepository;
+    private final PhotoThumbnailRepository photoThumbnailRepository;
+    private final PhotoStorage photoStorage;
+    private final DerivativeCache derivativeCache;
+    private final ImageProcessingExecutor imageProcessingExecutor;
+    private final PhotoDuplicateIndex photoDuplicateIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    // Derivatives being rendered, by cache key
+    private final ConcurrentMap<String, CompletableFuture<Optional<StoredImage>>> derivativeRenders =
+            new ConcurrentHashMap<>();
+
+    @Value("${app.color-extraction.mode:BALANCED}")
+    private ColorExtractor.Mode colorExtractionMode;
+
+    @Value("${app.color-extraction.palette-size:5}")
+    private int paletteSize;
+
+    public PhotoService(PhotoRepository photoRepository, PhotoThumbnailRepository photoThumbnailRepository,
+            PhotoStorage photoStorage, DerivativeCache derivativeCache, ImageProcessingExecutor imageProcessingExecutor,
+            PhotoDuplicateIndex photoDuplicateIndex, JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.photoRepository = photoRepository;
+        this.photoThumbnailRepository = photoThumbnailRepository;
+        this.photoStorage = photoStorage;
+        this.derivativeCache = derivativeCache;
+        this.imageProcessingExecutor = imageProcessingExecutor;
+        this.photoDuplicateIndex = photoDuplicateIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Image content ready to be streamed, identified by its content hash, with
+     * its media type.
+     */
+    public record StoredImage(String contentHash, Resource resource, MediaType mediaType) {
+    }
+
+    /**
+     * A thumbnail in storage: its key and the format it was encoded in.
+     */
+    public record StoredThumbnail(String contentHash, ImageFormat format) {
+    }
+
+    /**
+     * A photo whose blobs are in storage and whose color, dimensions and
+     * thumbnails have been computed, but which has no database row yet.
+     */
+    public record PreparedPhoto(Photo photo, Map<Size, StoredThumbnail> thumbnails) {
+
+        /**
+         * A copy of the photo {@code originalId}: only the link is recorded.
+         * The id is null when the original is not stored yet.
+         */
+        public static PreparedPhoto duplicate(Long perceptualHash, Long originalId) {
+            return new PreparedPhoto(new Photo(null, null, null, null, null, PhotoStatus.DUPLICATE, perceptualHash,
+                    originalId, null, null), Map.of());
+        }
+    }
+
+    // Output of the CPU-bound part of the work on an image
+    private record RenderedImage(int width, int height, String representativeColor, String palette,
+            long perceptualHash, Map<Size, byte[]> thumbnails) {
+    }
+
+    /**
+     * Stores the image and its thumbnails and computes the photo metadata. The
+     * image is decoded only once, at preview resolution, for all of it, on the
+     * {@link ImageProcessingExecutor}. Images that cannot be decoded are marked
+     * FAILED; near duplicates of an indexed photo (see
+     * {@link PhotoDuplicateIndex}) are marked DUPLICATE and nothing of them is
+     * stored. Does not touch the database, so it can run on any thread.
+     */
+    public PreparedPhoto prepare(byte[] image) throws IOException {
+        return prepare(image, perceptualHash -> true);
+    }
+
+    /**
+     * Like {@link #prepare(byte[])}, with a further duplicate check for
+     * images that are not indexed yet, such as the other photos of an import:
+     * {@code claim} is given the perceptual hash once the image passed the
+     * index, before anything is stored, and returns false to have it marked
+     * DUPLICATE, without the id of the original.
+     */
+    public PreparedPhoto prepare(byte[] image, LongPredicate claim) throws IOException {
+        RenderedImage rendered = render(image, true);
+        if (rendered != null) {
+            Optional<Long> original = photoDuplicateIndex.findDuplicate(rendered.perceptualHash());
+            if (original.isPresent()) {
+                return PreparedPhoto.duplicate(rendered.perceptualHash(), original.get());
+            }
+            if (!claim.test(rendered.perceptualHash())) {
+                return PreparedPhoto.duplicate(rendered.perceptualHash(), null);
+            }
+        }
+
+        String contentHash = photoStorage.store(image);
+        ImageFormat format = ImageFormat.detect(image).orElse(null);
+        Map<Size, StoredThumbnail> thumbnails = Map.of();
+        String representativeColor = null;
+        String palette = null;
+        Integer width = null;
+        Integer height = null;
+        Long perceptualHash = null;
+        if (rendered != null) {
+            representativeColor = rendered.representativeColor();
+            palette = rendered.palette();
+            width = rendered.width();
+            height = rendered.height();
+            perceptualHash = rendered.perceptualHash();
+            thumbnails = storeThumbnails(rendered.thumbnails());
+        }
+        PhotoStatus status = rendered != null ? PhotoStatus.READY : PhotoStatus.FAILED;
+        return new PreparedPhoto(new Photo(null, representativeColor, contentHash, width, height, status,
+                perceptualHash, null, palette, format), thumbnails);
+    }
+
+    /**
+     * Reserves the id of an uploaded photo that still has to be processed.
+     */
+    @Transactional
+    public Photo createPending() {
+        Photo photo = new Photo();
+        photo.setStatus(PhotoStatus.PENDING);
+        entityManager.persist(photo);
+        return photo;
+    }
+
+    /**
+     * Records the processed image of a pending photo. Returns empty if the
+     * photo has been deleted in the meantime.
+     */
+    @CacheEvict(cacheNames = CacheConfig.PHOTO_SUMMARIES, key = "#id")
+    @Transactional
+    public Optional<Photo> complete(Long id, PreparedPhoto prepared) {
+        Photo photo = entityManager.find(Photo.class, id);
+        if (photo == null) {
+            return Optional.empty();
+        }
+        Photo processed = prepared.photo();
+        photo.setRepresentativeColor(processed.getRepresentativeColor());
+        photo.setContentHash(processed.getContentHash());
+        photo.setWidth(processed.getWidth());
+        photo.setHeight(processed.getHeight());
+        photo.setStatus(processed.getStatus());
+        photo.setPerceptualHash(processed.getPerceptualHash());
+        photo.setDuplicateOf(processed.getDuplicateOf());
+        photo.setPalette(processed.getPalette());
+        photo.setFormat(processed.getFormat());
+        persistThumbnails(id, prepared.thumbnails());
+        return Optional.of(photo);
+    }
+
+    /**
+     * Stores a batch of prepared photos in one transaction. Inserts are sent as
+     * JDBC batches and the persistence context is cleared afterwards.
+     */
+    @Transactional
+    public void saveAll(List<PreparedPhoto> batch) {
+        batch.forEach(this::persist);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void persist(PreparedPhoto prepared) {
+        entityManager.persist(prepared.photo());
+        persistThumbnails(prepared.photo().getId(), prepared.thumbnails());
+    }
+
+    private void persistThumbnails(Long photoId, Map<Size, StoredThumbnail> thumbnails) {
+        thumbnails.forEach((size, thumbnail) -> entityManager.persist(
+                new PhotoThumbnail(new PhotoThumbnailId(photoId, size), thumbnail.contentHash(), thumbnail.format())));
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        photoThumbnailRepository.deleteByPhotoId(id);
+        photoRepository.deleteById(id);
+    }
+
+    public Optional<StoredImage> findImage(Long id) {
+        return photoRepository.findById(id).flatMap(this::load);
+    }
+
+    /**
+     * Returns the requested thumbnail, generating the thumbnails on the fly
+     * for photos stored before they were precomputed. Sizes that are not
+     * precomputed come from the {@link DerivativeCache}, or are rendered on
+     * the image processing pool on a miss, once however many requests miss
+     * together; when the original is not larger than the size, the original
+     * is returned instead.
+     */
+    public Optional<StoredImage> findThumbnail(Long id, Size size) throws IOException {
+        if (!size.isPrecomputed()) {
+            return findDerivative(id, size);
+        }
+        PhotoThumbnailId thumbnailId = new PhotoThumbnailId(id, size);
+        Optional<StoredImage> thumbnail = findThumbnail(thumbnailId);
+        if (thumbnail.isEmpty() && generateThumbnails(id)) {
+            thumbnail = findThumbnail(thumbnailId);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Fills in statuses, formats, dimensions, perceptual hashes, palettes and
+     * thumbnails for photos stored before they existed. Representative colors
+     * are left as they are.
+     */
+    public void backfill() throws IOException {
+        photoRepository.markLegacyPhotosReady();
+        backfillFormats();
+        List<Long> ids = photoRepository.findIdsToBackfill(Size.precomputed().size());
+        for (Long id : ids) {
+            RenderedImage rendered = readImage(id, true);
+            if (rendered == null) {
+                continue;
+            }
+            photoRepository.updateImageMetadata(id, rendered.width(), rendered.height(), rendered.perceptualHash(),
+                    rendered.palette());
+            saveThumbnails(id, rendered.thumbnails());
+        }
+
+        if (!ids.isEmpty()) {
+            logger.info("Aggiornati dimensioni e miniature di {} foto", ids.size());
+        }
+    }
+
+    /**
+     * Moves the images of databases created when blobs were stored in the
+     * tables into {@link PhotoStorage}, then drops the blob columns. Each row
+     * is cleared only once its blob is stored, so an interrupted migration
+     * resumes where it stopped.
+     */
+    public void migrateLegacyBlobs() throws IOException {
+        migrateBlobColumn("photo", "id");
+        migrateBlobColumn("photo_thumbnail", "photo_id", "size");
+    }
+
+    /**
+     * Deletes the blobs no photo or thumbnail refers to anymore. Blobs stored
+     * after {@code storedBefore} are kept, since the rows referring to them
+     * may not be committed yet.
+     */
+    public void removeUnreferencedBlobs(Instant storedBefore) throws IOException {
+        Set<String> referenced = new HashSet<>(jdbcTemplate.queryForList(REFERENCED_HASHES_SQL, String.class));
+        int removed = 0;
+        for (String hash : photoStorage.list(storedBefore)) {
+            if (!referenced.contains(hash)) {
+                photoStorage.delete(hash);
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            logger.info("Eliminati {} file di immagini non più utilizzati", removed);
+        }
+    }
+
+    private void migrateBlobColumn(String table, String... keyColumns) throws IOException {
+        Integer columns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = ? AND COLUMN_NAME = 'IMAGE'",
+                Integer.class, table.toUpperCase());
+        if (columns == null || columns == 0) {
+            return;
+        }
+
+        String where = Arrays.stream(keyColumns).map(column -> column + " = ?").collect(Collectors.joining(" AND "));
+        List<Object[]> keys = jdbcTemplate.query(
+                "SELECT " + String.join(", ", keyColumns) + " FROM " + table + " WHERE image IS NOT NULL",
+                (rs, rowNum) -> {
+                    Object[] key = new Object[keyColumns.length];
+                    for (int i = 0; i < key.length; i++) {
+                        key[i] = rs.getObject(i + 1);
+                    }
+                    return key;
+                });
+        for (Object[] key : keys) {
+            byte[] image = jdbcTemplate.queryForObject("SELECT image FROM " + table + " WHERE " + where,
+                    byte[].class, key);
+            Object[] args = new Object[key.length + 1];
+            args[0] = photoStorage.store(image);
+            System.arraycopy(key, 0, args, 1, key.length);
+            jdbcTemplate.update("UPDATE " + table + " SET content_hash = ?, image = NULL WHERE " + where, args);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN image");
+        logger.info("Spostate {} immagini della tabella {} nello storage", keys.size(), table);
+    }
+
+    private Optional<StoredImage> findThumbnail(PhotoThumbnailId id) {
+        return photoThumbnailRepository.findById(id)
+                .flatMap(thumbnail -> load(thumbnail.getContentHash(), thumbnail.getFormat()));
+    }
+
+    private Optional<StoredImage> findDerivative(Long id, Size size) throws IOException {
+        Optional<Photo> photo = photoRepository.findById(id).filter(found -> found.getContentHash() != null);
+        if (photo.isEmpty()) {
+            return Optional.empty();
+        }
+        if (fitsIn(photo.get(), size)) {
+            // Already small enough: the original is served as is
+            return load(photo.get());
+        }
+        String key = photo.get().getContentHash() + "-" + size.name().toLowerCase(Locale.ROOT);
+        Optional<StoredImage> cached = findCachedDerivative(key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        // Concurrent misses on the same key wait for the first one to render it
+        CompletableFuture<Optional<StoredImage>> render = new CompletableFuture<>();
+        CompletableFuture<Optional<StoredImage>> running = derivativeRenders.putIfAbsent(key, render);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // The render may have completed between the lookup and the claim
+            Optional<StoredImage> derivative = findCachedDerivative(key);
+            if (derivative.isEmpty()) {
+                derivative = renderDerivative(photo.get(), key, size);
+            }
+            render.complete(derivative);
+            return derivative;
+        } catch (IOException | RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            derivativeRenders.remove(key, render);
+        }
+    }
+
+    private Optional<StoredImage> findCachedDerivative(String key) {
+        return derivativeCache.get(key).map(derivative -> toStoredImage(key, derivative.resource(),
+                derivative.format()));
+    }
+
+    private Optional<StoredImage> renderDerivative(Photo photo, String key, Size size) throws IOException {
+        Optional<StoredImage> original = load(photo);
+        if (original.isEmpty()) {
+            return Optional.empty();
+        }
+        byte[] image = original.get().resource().getContentAsByteArray();
+        byte[] derivative = imageProcessingExecutor.call(() -> {
+            DecodedImage decoded = ImageDecoder.decodePreview(image, size.getMaxSide());
+            if (decoded == null || decoded.image() == null) {
+                return null;
+            }
+            if (Math.max(decoded.width(), decoded.height()) <= size.getMaxSide()) {
+                // Only for photos whose dimensions were never recorded
+                return image;
+            }
+            return ThumbnailGenerator.generate(decoded.image(), size.getMaxSide());
+        });
+        if (derivative == null) {
+            return Optional.empty();
+        }
+        if (derivative == image) {
+            return original;
+        }
+        ImageFormat format = ImageFormat.detect(derivative).orElse(ImageFormat.JPEG);
+        DerivativeCache.Derivative stored = derivativeCache.put(key, derivative, format);
+        return Optional.of(toStoredImage(key, stored.resource(), stored.format()));
+    }
+
+    private static boolean fitsIn(Photo photo, Size size) {
+        return photo.getWidth() != null && photo.getHeight() != null
+                && Math.max(photo.getWidth(), photo.getHeight()) <= size.getMaxSide();
+    }
+
+    private static Optional<StoredImage> await(CompletableFuture<Optional<StoredImage>> render) throws IOException {
+        try {
+            return render.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Attesa dell'immagine interrotta");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Optional<StoredImage> load(Photo photo) {
+        return photo.getContentHash() != null ? load(photo.getContentHash(), photo.getFormat()) : Optional.empty();
+    }
+
+    private Optional<StoredImage> load(String hash, ImageFormat format) {
+        return photoStorage.load(hash).map(resource -> toStoredImage(hash, resource, format));
+    }
+
+    private static StoredImage toStoredImage(String hash, Resource resource, ImageFormat format) {
+        if (format != null) {
+            return new StoredImage(hash, resource, MediaType.parseMediaType(format.getMediaType()));
+        }
+        // Not backfilled yet: sniffed from the content
+        return new StoredImage(hash, resource, sniff(resource).map(ImageFormat::getMediaType)
+                .map(MediaType::parseMediaType)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM));
+    }
+
+    private static Optional<ImageFormat> sniff(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return ImageFormat.detect(in.readNBytes(ImageFormat.HEADER_LENGTH));
+        } catch (IOException e) {
+            // Left to fail when the content is streamed
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records the format of the images and thumbnails stored before it was
+     * recorded at ingest, reading only their first bytes.
+     */
+    private void backfillFormats() {
+        List<Photo> photos = photoRepository.findByFormatIsNullAndContentHashIsNotNull();
+        photos.forEach(photo -> photoStorage.load(photo.getContentHash()).flatMap(PhotoService::sniff)
+                .ifPresent(photo::setFormat));
+        photoRepository.saveAll(photos);
+
+        List<PhotoThumbnail> thumbnails = photoThumbnailRepository.findByFormatIsNullAndContentHashIsNotNull();
+        thumbnails.forEach(thumbnail -> photoStorage.load(thumbnail.getContentHash()).flatMap(PhotoService::sniff)
+                .ifPresent(thumbnail::setFormat));
+        photoThumbnailRepository.saveAll(thumbnails);
+
+        if (!photos.isEmpty() || !thumbnails.isEmpty()) {
+            logger.info("Registrato il formato di {} foto e {} miniature", photos.size(), thumbnails.size());
+        }
+    }
+
+    private RenderedImage readImage(Long id, boolean withColors) throws IOException {
+        Optional<StoredImage> image = findImage(id);
+        return image.isPresent() ? render(image.get().resource().getContentAsByteArray(), withColors) : null;
+    }
+
+    private boolean generateThumbnails(Long id) {
+        try {
+            RenderedImage rendered = readImage(id, false);
+            if (rendered == null) {
+                return false;
+            }
+            saveThumbnails(id, rendered.thumbnails());
+            return true;
+        } catch (IOException e) {
+            logger.warn("Errore nella generazione delle miniature della foto {}: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+    private void saveThumbnails(Long photoId, Map<Size, byte[]> rendered) {
+        List<PhotoThumbnail> thumbnails = new ArrayList<>();
+        storeThumbnails(rendered).forEach((size, thumbnail) -> thumbnails.add(
+                new PhotoThumbnail(new PhotoThumbnailId(photoId, size), thumbnail.contentHash(), thumbnail.format())));
+        photoThumbnailRepository.saveAll(thumbnails);
+    }
+
+    private Map<Size, StoredThumbnail> storeThumbnails(Map<Size, byte[]> rendered) {
+        Map<Size, StoredThumbnail> thumbnails = new EnumMap<>(Size.class);
+        rendered.forEach((size, thumbnail) -> {
+            try {
+                thumbnails.put(size, new StoredThumbnail(photoStorage.store(thumbnail),
+                        ImageFormat.detect(thumbnail).orElse(ImageFormat.JPEG)));
+            } catch (IOException e) {
+                logger.warn("Errore nel salvataggio della miniatura {}: {}", size, e.getMessage());
+            }
+        });
+        return thumbnails;
+    }
+
+    /**
+     * Decodes the image, hashes it and encodes its thumbnails, plus the
+     * representative color and palette if asked, on the image processing pool.
+     * Null if it cannot be decoded.
+     */
+    private RenderedImage render(byte[] image, boolean withColors) throws IOException {
+        return imageProcessingExecutor.call(() -> {
+            DecodedImage decoded = decode(image);
+            if (decoded == null) {
+                return null;
+            }
+            ColorAnalysis colors = withColors
+                    ? ColorExtractor.analyze(decoded.image(), colorExtractionMode,
+                            Math.min(paletteSize, ColorPalette.MAX_SIZE))
+                    : new ColorAnalysis(null, null);
+            return new RenderedImage(decoded.width(), decoded.height(), colors.representativeColor(),
+                    colors.palette(), PerceptualHash.dHash(decoded.image()), renderThumbnails(decoded.image()));
+        });
+    }
+
+    private Map<Size, byte[]> renderThumbnails(BufferedImage decoded) {
+        Map<Size, byte[]> thumbnails = new EnumMap<>(Size.class);
+        for (Size size : Size.precomputed()) {
+            try {
+                thumbnails.put(size, ThumbnailGenerator.generate(decoded, size.getMaxSide()));
+            } catch (IOException e) {
+                logger.warn("Errore nella generazione della miniatura {}: {}", size, e.getMessage());
+            }
+        }
+        return thumbnails;
+    }
+
+    private DecodedImage decode(byte[] image) {
+        try {
+            DecodedImage decoded = ImageDecoder.decodePreview(image, PREVIEW_LONG_SIDE);
+            return decoded != null && decoded.image() != null ? decoded : null;
+        } catch (IOException e) {
+            logger.warn("Errore nella decodifica dell'immagine: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.labirinto.app.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.labirinto.app.util.ImageFormat;
+
+/**
+ * Size-bounded disk cache of images derived on demand from the originals,
+ * such as the resized tiers not precomputed at ingest.
+ * <p>
+ * Entries are files named after their key and format
+ * ({@code <content hash>-<tier>.<format>}), fanned out like
+ * {@link FileSystemPhotoStorage}, so a hit needs no look at the content to
+ * know its type. When the total size goes
+ * past {@code app.derivatives.max-size} the least recently used files are
+ * deleted. Reads refresh the file timestamp, so the order survives restarts.
+ * Derivatives of deleted photos are not removed: they age out.
+ */
+@Component
+public class DerivativeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DerivativeCache.class);
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}-[a-z0-9]+");
+    private static final Pattern FILE_NAME = Pattern.compile("(" + KEY.pattern() + ")\\.([a-z]+)");
+
+    /**
+     * A cached image and its format.
+     */
+    public record Derivative(Resource resource, ImageFormat format) {
+    }
+
+    private record Entry(long size, ImageFormat format) {
+    }
+
+    private final Path root;
+    private final Path tmp;
+    private final long maxSize;
+
+    // Size and format of each entry, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    public DerivativeCache(@Value("${app.derivatives.path:./data/derivatives}") String root,
+            @Value("${app.derivatives.max-size:512MB}") DataSize maxSize) throws IOException {
+        this.root = Files.createDirectories(Paths.get(root).toAbsolutePath().normalize());
+        this.tmp = Files.createDirectories(this.root.resolve("tmp"));
+        this.maxSize = maxSize.toBytes();
+        load();
+    }
+
+    public Optional<Derivative> get(String key) {
+        if (!KEY.matcher(key).matches()) {
+            return Optional.empty();
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return Optional.empty();
+        }
+        Path path = pathOf(key, entry.format());
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // Deleted behind our back
+            synchronized (this) {
+                if (entries.remove(key, entry)) {
+                    size -= entry.size();
+                }
+            }
+            return Optional.empty();
+        }
+        return Optional.of(new Derivative(new FileSystemResource(path), entry.format()));
+    }
+
+    /**
+     * Stores the content under the key, evicting the least recently used
+     * entries as needed. The new entry itself is always kept.
+     */
+    public Derivative put(String key, byte[] content, ImageFormat format) throws IOException {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Chiave non valida: " + key);
+        }
+        Path target = pathOf(key, format);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tmp, key, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(content.length, format));
+            if (previous != null) {
+                size -= previous.size();
+                if (previous.format() != format) {
+                    evicted.add(pathOf(key, previous.format()));
+                }
+            }
+            size += content.length;
+            evicted.addAll(evict());
+        }
+        delete(evicted);
+        return new Derivative(new FileSystemResource(target), format);
+    }
+
+    /**
+     * @return the total size of the cached files in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    // Called with the monitor held; the files are deleted afterwards
+    private List<Path> evict() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && entries.size() > 1) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            size -= eldest.getValue().size();
+            evicted.add(pathOf(eldest.getKey(), eldest.getValue().format()));
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    private void delete(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Impossibile eliminare {} dalla cache delle immagini: {}", path.getFileName(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    private record CachedFile(String key, Entry entry, FileTime lastModified) {
+    }
+
+    private void load() throws IOException {
+        List<CachedFile> files = new ArrayList<>();
+        // Files without a known format extension predate it and are dropped
+        List<Path> unknown = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+                if (!Files.isRegularFile(path) || path.getParent().equals(tmp)) {
+                    continue;
+                }
+                Matcher matcher = FILE_NAME.matcher(name);
+                Optional<ImageFormat> format = matcher.matches() ? formatOf(matcher.group(2)) : Optional.empty();
+                if (format.isPresent()) {
+                    files.add(new CachedFile(matcher.group(1), new Entry(Files.size(path), format.get()),
+                            Files.getLastModifiedTime(path)));
+                } else if (KEY.matcher(name).matches()) {
+                    unknown.add(path);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(CachedFile::lastModified));
+        List<Path> evicted;
+        synchronized (this) {
+            for (CachedFile file : files) {
+                entries.put(file.key(), file.entry());
+                size += file.entry().size();
+            }
+            evicted = evict();
+        }
+        evicted.addAll(unknown);
+        delete(evicted);
+        logger.info("Cache delle immagini ridimensionate: {} file, {} KB", entries.size(), size / 1024);
+    }
+
+    private Path pathOf(String key, ImageFormat format) {
+        return root.resolve(key.substring(0, 2)).resolve(key + "." + format.name().toLowerCase(Locale.ROOT));
+    }
+
+    private static Optional<ImageFormat> formatOf(String extension) {
+        try {
+            return Optional.of(ImageFormat.valueOf(extension.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
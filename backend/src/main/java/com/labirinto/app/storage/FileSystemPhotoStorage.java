@@ -0,0 +1,110 @@
+package com.labirinto.app.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.labirinto.app.util.Hashing;
+
+/**
+ * Stores blobs as files named after their hash, fanned out over 256
+ * directories by the first two hex digits ({@code ab/abcdef...}).
+ * <p>
+ * Content is written to a temporary file, synced and then atomically renamed
+ * into place, so readers never see a partial blob. Since the name is the
+ * hash, a concurrent write of the same content simply replaces the file with
+ * an identical one.
+ */
+@Component
+public class FileSystemPhotoStorage implements PhotoStorage {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Path tmp;
+
+    public FileSystemPhotoStorage(@Value("${app.storage.path:./data/photos}") String root) throws IOException {
+        this.root = Files.createDirectories(Paths.get(root).toAbsolutePath().normalize());
+        this.tmp = Files.createDirectories(this.root.resolve("tmp"));
+    }
+
+    @Override
+    public String store(byte[] content) throws IOException {
+        String hash = Hashing.sha256Hex(content);
+        Path target = pathOf(hash);
+        if (Files.exists(target)) {
+            // Refresh the timestamp so that a sweep of unreferenced blobs
+            // running concurrently leaves it alone
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return hash;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tmp, hash, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return hash;
+    }
+
+    @Override
+    public Optional<Resource> load(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path path = pathOf(hash);
+        return Files.isRegularFile(path) ? Optional.of(new FileSystemResource(path)) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        if (HASH.matcher(hash).matches()) {
+            Files.deleteIfExists(pathOf(hash));
+        }
+    }
+
+    @Override
+    public List<String> list(Instant storedBefore) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (HASH.matcher(name).matches()
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(storedBefore)) {
+                    hashes.add(name);
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
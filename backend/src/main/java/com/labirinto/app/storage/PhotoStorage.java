@@ -0,0 +1,32 @@
+package com.labirinto.app.storage;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Content-addressed store for image blobs. Blobs are identified by the
+ * SHA-256 hash of their content, so storing the same content twice keeps a
+ * single copy.
+ */
+public interface PhotoStorage {
+
+    /**
+     * Stores the content if not already present.
+     *
+     * @return the lowercase hex SHA-256 of the content, the key to load it back
+     */
+    String store(byte[] content) throws IOException;
+
+    Optional<Resource> load(String hash);
+
+    void delete(String hash) throws IOException;
+
+    /**
+     * Hashes of the blobs stored before the given instant.
+     */
+    List<String> list(Instant storedBefore) throws IOException;
+}
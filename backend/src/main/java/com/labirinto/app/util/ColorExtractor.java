@@ -1,19 +1,80 @@
 package com.labirinto.app.util;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.labirinto.app.util.ColorPalette.Swatch;
 
 /**
  * Utility class to extract the representative color from image byte arrays.
  * Uses the dominant color extraction algorithm.
+ * <p>
+ * Pixels are read straight from the image raster when its layout is a plain
+ * 8-bit sRGB one (what ImageIO produces for JPEG and most PNG files), and
+ * accumulated into fixed 4096-slot primitive histograms, so no object is
+ * allocated per pixel.
+ * <p>
+ * When starting from encoded bytes, the sampling is pushed down to the image
+ * decoder, which then never materializes the full-resolution image.
+ * <p>
+ * {@link #analyze} also derives a palette from the same histogram with a
+ * median cut over its buckets, so it costs one pass over the pixels too.
  */
 public class ColorExtractor {
 
-    private static final int SAMPLE_RATE = 1; // Sample every nth pixel for performance
+    /**
+     * Trade-off between accuracy and speed, expressed as the number of
+     * evenly spaced pixels sampled from the image.
+     */
+    public enum Mode {
+        /** Every pixel is sampled. */
+        ACCURATE(0),
+        /** About 250k samples, enough for a stable dominant color on photos. */
+        BALANCED(250_000),
+        /** About 50k samples, for previews and bulk imports. */
+        FAST(50_000);
+
+        private final int targetSamples;
+
+        Mode(int targetSamples) {
+            this.targetSamples = targetSamples;
+        }
+
+        /**
+         * @return the distance in pixels between two samples on each axis
+         */
+        int samplingStep(int width, int height) {
+            if (targetSamples == 0) {
+                return 1;
+            }
+            double pixels = (double) width * (double) height;
+            return Math.max(1, (int) Math.sqrt(pixels / targetSamples));
+        }
+    }
+
+    public static final Mode DEFAULT_MODE = Mode.BALANCED;
+
+    // Color quantization to 12 bits (4 bits per channel)
+    private static final int BUCKETS = 1 << 12;
+
+    // Luminance thresholds scaled by 10^4, to compare against the integer
+    // 2126 * r + 7152 * g + 722 * b instead of a floating-point luminance
+    private static final int LUMINANCE_MIN = 30 * 10_000;  // near-black, potential background
+    private static final int LUMINANCE_MAX = 240 * 10_000; // near-white, potential background
+
+    private static final double EXCLUDED_RATIO_THRESHOLD = 0.40; // if too many excluded, use all pixels
 
     /**
      * Extracts the dominant/representative color from an image byte array.
@@ -22,17 +83,26 @@ public class ColorExtractor {
      * @return hex color string (e.g., "#FF5733") or null if extraction fails
      */
     public static String extractRepresentativeColor(byte[] imageData) {
-        if (imageData == null || imageData.length == 0) {
-            return null;
-        }
+        return extractRepresentativeColor(imageData, DEFAULT_MODE);
+    }
 
+    /**
+     * Extracts the dominant/representative color from an image byte array,
+     * decoding only the pixels that the mode would sample.
+     *
+     * @param imageData the image as a byte array
+     * @param mode      how many pixels to sample
+     * @return hex color string (e.g., "#FF5733") or null if extraction fails
+     */
+    public static String extractRepresentativeColor(byte[] imageData, Mode mode) {
         try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
-            if (image == null) {
+            ImageDecoder.DecodedImage decoded = ImageDecoder.decode(imageData, mode::samplingStep);
+            if (decoded == null || decoded.image() == null) {
                 return null;
             }
 
-            return getDominantColor(image);
+            // The decoder already skipped the pixels the mode would not sample
+            return extractRepresentativeColor(decoded.image(), Mode.ACCURATE);
         } catch (IOException e) {
             System.err.println("Error extracting color from image: " + e.getMessage());
             return null;
@@ -40,95 +110,192 @@ public class ColorExtractor {
     }
 
     /**
-     * Extracts the dominant color using frequency analysis.
+     * Extracts the dominant/representative color from an already decoded image,
+     * so callers that need the image for other purposes decode it only once.
      *
-     * @param image the BufferedImage to analyze
-     * @return hex color string or null
+     * @param image the decoded image
+     * @return hex color string (e.g., "#FF5733")
      */
-    private static String getDominantColor(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
+    public static String extractRepresentativeColor(BufferedImage image) {
+        return extractRepresentativeColor(image, DEFAULT_MODE);
+    }
 
-        // Use color quantization to group similar colors together before counting.
-        // This reduces the effect of small variations and noise that would make
-        // exact-RGB frequency counting unreliable for photographs.
-        // We'll quantize to 12 bits (4 bits per channel).
-        final Map<Integer, long[]> bucketMapAll = new HashMap<>();
-        final Map<Integer, long[]> bucketMapFiltered = new HashMap<>();
-        int totalSamples = 0;
-        int excludedSamples = 0;
-
-        final int LUMINANCE_MIN = 30;  // consider near-black as potential background
-        final int LUMINANCE_MAX = 240; // consider near-white as potential background
-
-        for (int y = 0; y < height; y += SAMPLE_RATE) {
-            for (int x = 0; x < width; x += SAMPLE_RATE) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                totalSamples++;
-                double luminance = 0.2126 * r + 0.7152 * g + 0.0722 * b;
-                boolean excluded = (luminance < LUMINANCE_MIN || luminance > LUMINANCE_MAX);
-                if (excluded) excludedSamples++;
-
-                // Quantize to 4 bits per channel
-                int rq = r >> 4;
-                int gq = g >> 4;
-                int bq = b >> 4;
-
-                int bucket = (rq << 8) | (gq << 4) | bq;
-
-                // Update ALL buckets
-                long[] statsAll = bucketMapAll.get(bucket);
-                if (statsAll == null) {
-                    statsAll = new long[4];
-                    bucketMapAll.put(bucket, statsAll);
+    /**
+     * @param image the decoded image
+     * @param mode  how many pixels to sample
+     * @return hex color string (e.g., "#FF5733") or null for an empty image
+     */
+    public static String extractRepresentativeColor(BufferedImage image, Mode mode) {
+        int step = mode.samplingStep(image.getWidth(), image.getHeight());
+        Histogram histogram = new Histogram();
+        accumulate(image, step, histogram);
+        return getDominantColor(histogram);
+    }
+
+    /**
+     * Representative color and encoded palette (see {@link ColorPalette}) of
+     * an image, both null for an empty image.
+     */
+    public record ColorAnalysis(String representativeColor, String palette) {
+    }
+
+    /**
+     * Computes the representative color and the palette of an already decoded
+     * image from a single pass over its pixels.
+     *
+     * @param image       the decoded image
+     * @param mode        how many pixels to sample
+     * @param paletteSize the maximum number of palette colors
+     */
+    public static ColorAnalysis analyze(BufferedImage image, Mode mode, int paletteSize) {
+        int step = mode.samplingStep(image.getWidth(), image.getHeight());
+        Histogram histogram = new Histogram();
+        accumulate(image, step, histogram);
+        if (histogram.samples == 0) {
+            return new ColorAnalysis(null, null);
+        }
+        return new ColorAnalysis(getDominantColor(histogram), ColorPalette.encode(medianCut(histogram, paletteSize)));
+    }
+
+    /**
+     * Median cut over the non-empty buckets of the histogram, background
+     * included: the box with the most pixels times the range of its widest
+     * channel is split at the weighted median of that channel, until there are
+     * {@code size} boxes or none can be split. Each box becomes a swatch with
+     * the average color of its pixels, heaviest first.
+     */
+    private static List<Swatch> medianCut(Histogram histogram, int size) {
+        int[] buckets = new int[BUCKETS];
+        int used = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (histogram.allCounts[bucket] > 0) {
+                buckets[used++] = bucket;
+            }
+        }
+
+        // Boxes are ranges of the buckets array, as {from, to}
+        List<int[]> boxes = new ArrayList<>();
+        boxes.add(new int[] { 0, used });
+        long[] sortKeys = new long[used];
+        while (boxes.size() < size) {
+            int[] widest = null;
+            int widestChannel = 0;
+            long widestScore = 0;
+            for (int[] box : boxes) {
+                if (box[1] - box[0] < 2) {
+                    continue;
                 }
-                statsAll[0] += 1;
-                statsAll[1] += r;
-                statsAll[2] += g;
-                statsAll[3] += b;
-
-                // Update FILTERED buckets (only non-excluded)
-                if (!excluded) {
-                    long[] statsF = bucketMapFiltered.get(bucket);
-                    if (statsF == null) {
-                        statsF = new long[4];
-                        bucketMapFiltered.put(bucket, statsF);
-                    }
-                    statsF[0] += 1;
-                    statsF[1] += r;
-                    statsF[2] += g;
-                    statsF[3] += b;
+                int[] ranges = channelRanges(histogram, buckets, box);
+                int channel = ranges[0] >= ranges[1] && ranges[0] >= ranges[2] ? 0 : ranges[1] >= ranges[2] ? 1 : 2;
+                long score = count(histogram, buckets, box) * ranges[channel];
+                if (score > widestScore) {
+                    widest = box;
+                    widestChannel = channel;
+                    widestScore = score;
                 }
             }
+            if (widest == null) {
+                break;
+            }
+            boxes.remove(widest);
+            int split = splitAtMedian(histogram, buckets, widest, widestChannel, sortKeys);
+            boxes.add(new int[] { widest[0], split });
+            boxes.add(new int[] { split, widest[1] });
         }
 
-        // Decide whether to use filtered buckets or fall back to all buckets
-        double excludedRatio = totalSamples == 0 ? 0.0 : (double) excludedSamples / (double) totalSamples;
-        final double EXCLUDED_RATIO_THRESHOLD = 0.40; // if too many excluded, use all pixels
+        List<Swatch> swatches = new ArrayList<>(boxes.size());
+        for (int[] box : boxes) {
+            long count = count(histogram, buckets, box);
+            long red = 0, green = 0, blue = 0;
+            for (int i = box[0]; i < box[1]; i++) {
+                int sum = buckets[i] * 3;
+                red += histogram.allSums[sum];
+                green += histogram.allSums[sum + 1];
+                blue += histogram.allSums[sum + 2];
+            }
+            int rgb = (int) (red / count) << 16 | (int) (green / count) << 8 | (int) (blue / count);
+            swatches.add(new Swatch(rgbToHex(rgb), (double) count / histogram.samples));
+        }
+        swatches.sort(Comparator.comparingDouble(Swatch::weight).reversed());
+        return swatches;
+    }
 
-        Map<Integer, long[]> chosenMap = bucketMapFiltered;
-        if (bucketMapFiltered.isEmpty() || excludedRatio >= EXCLUDED_RATIO_THRESHOLD) {
-            chosenMap = bucketMapAll;
+    // Sorts the box by the channel and returns the index splitting its pixels in half
+    private static int splitAtMedian(Histogram histogram, int[] buckets, int[] box, int channel, long[] sortKeys) {
+        int from = box[0];
+        int to = box[1];
+        for (int i = from; i < to; i++) {
+            sortKeys[i] = (long) channelAverage(histogram, buckets[i], channel) << 32 | buckets[i];
+        }
+        Arrays.sort(sortKeys, from, to);
+        for (int i = from; i < to; i++) {
+            buckets[i] = (int) sortKeys[i];
         }
 
-        if (chosenMap.isEmpty()) {
-            // Fallback to average color if nothing useful
-            return getAverageColor(image);
+        long half = count(histogram, buckets, box) / 2;
+        long seen = 0;
+        for (int i = from; i < to - 1; i++) {
+            seen += histogram.allCounts[buckets[i]];
+            if (seen >= half) {
+                return i + 1;
+            }
         }
+        return to - 1;
+    }
+
+    private static int[] channelRanges(Histogram histogram, int[] buckets, int[] box) {
+        int[] min = { 255, 255, 255 };
+        int[] max = { 0, 0, 0 };
+        for (int i = box[0]; i < box[1]; i++) {
+            for (int channel = 0; channel < 3; channel++) {
+                int value = channelAverage(histogram, buckets[i], channel);
+                min[channel] = Math.min(min[channel], value);
+                max[channel] = Math.max(max[channel], value);
+            }
+        }
+        return new int[] { max[0] - min[0], max[1] - min[1], max[2] - min[2] };
+    }
+
+    private static long count(Histogram histogram, int[] buckets, int[] box) {
+        long count = 0;
+        for (int i = box[0]; i < box[1]; i++) {
+            count += histogram.allCounts[buckets[i]];
+        }
+        return count;
+    }
+
+    private static int channelAverage(Histogram histogram, int bucket, int channel) {
+        return (int) (histogram.allSums[bucket * 3 + channel] / histogram.allCounts[bucket]);
+    }
+
+    /**
+     * Extracts the dominant color using frequency analysis.
+     *
+     * @param histogram the quantized color histogram of the image
+     * @return hex color string or null
+     */
+    private static String getDominantColor(Histogram histogram) {
+        if (histogram.samples == 0) {
+            return null;
+        }
+
+        // Decide whether to use filtered buckets or fall back to all buckets
+        double excludedRatio = (double) histogram.excluded / (double) histogram.samples;
+        boolean useFiltered = histogram.samples > histogram.excluded && excludedRatio < EXCLUDED_RATIO_THRESHOLD;
+        int[] counts = useFiltered ? histogram.filteredCounts : histogram.allCounts;
+        long[] sums = useFiltered ? histogram.filteredSums : histogram.allSums;
 
         // Score buckets using count weighted by saturation to favor colorful clusters
         int bestBucket = -1;
         double bestScore = -1.0;
-        for (Map.Entry<Integer, long[]> e : chosenMap.entrySet()) {
-            long[] st = e.getValue();
-            long count = st[0];
-            int avgR = (int) (st[1] / count);
-            int avgG = (int) (st[2] / count);
-            int avgB = (int) (st[3] / count);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            int count = counts[bucket];
+            if (count == 0) {
+                continue;
+            }
+            int avgR = (int) (sums[bucket * 3] / count);
+            int avgG = (int) (sums[bucket * 3 + 1] / count);
+            int avgB = (int) (sums[bucket * 3 + 2] / count);
 
             int max = Math.max(avgR, Math.max(avgG, avgB));
             int min = Math.min(avgR, Math.min(avgG, avgB));
@@ -137,55 +304,154 @@ public class ColorExtractor {
             double score = count * (1.0 + saturation); // emphasize saturated colors
             if (score > bestScore) {
                 bestScore = score;
-                bestBucket = e.getKey();
+                bestBucket = bucket;
             }
         }
 
         if (bestBucket == -1) {
-            return getAverageColor(image);
+            return getAverageColor(histogram);
         }
 
-        long[] bestStats = chosenMap.get(bestBucket);
-        int avgR = (int) (bestStats[1] / bestStats[0]);
-        int avgG = (int) (bestStats[2] / bestStats[0]);
-        int avgB = (int) (bestStats[3] / bestStats[0]);
+        int count = counts[bestBucket];
+        int avgR = (int) (sums[bestBucket * 3] / count);
+        int avgG = (int) (sums[bestBucket * 3 + 1] / count);
+        int avgB = (int) (sums[bestBucket * 3 + 2] / count);
 
         int dominantRGB = (avgR << 16) | (avgG << 8) | avgB;
         return rgbToHex(dominantRGB);
     }
 
     /**
-     * Alternative: Extract average color across the entire image.
+     * Alternative: average color across all the sampled pixels.
      * This provides a more balanced color representation.
      *
-     * @param image the BufferedImage to analyze
+     * @param histogram the quantized color histogram of the image
      * @return hex color string
      */
-    private static String getAverageColor(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
+    private static String getAverageColor(Histogram histogram) {
         long sumRed = 0, sumGreen = 0, sumBlue = 0;
-        long pixelCount = 0;
-
-        // Sample pixels for performance
-        for (int y = 0; y < height; y += SAMPLE_RATE) {
-            for (int x = 0; x < width; x += SAMPLE_RATE) {
-                int rgb = image.getRGB(x, y);
-                sumRed += (rgb >> 16) & 0xFF;
-                sumGreen += (rgb >> 8) & 0xFF;
-                sumBlue += rgb & 0xFF;
-                pixelCount++;
-            }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            sumRed += histogram.allSums[bucket * 3];
+            sumGreen += histogram.allSums[bucket * 3 + 1];
+            sumBlue += histogram.allSums[bucket * 3 + 2];
         }
 
-        int avgRed = (int) (sumRed / pixelCount);
-        int avgGreen = (int) (sumGreen / pixelCount);
-        int avgBlue = (int) (sumBlue / pixelCount);
+        int avgRed = (int) (sumRed / histogram.samples);
+        int avgGreen = (int) (sumGreen / histogram.samples);
+        int avgBlue = (int) (sumBlue / histogram.samples);
 
         int avgRGB = (avgRed << 16) | (avgGreen << 8) | avgBlue;
         return rgbToHex(avgRGB);
     }
 
+    private static void accumulate(BufferedImage image, int step, Histogram histogram) {
+        if (!accumulateInterleavedBytes(image, step, histogram)
+                && !accumulatePackedInts(image, step, histogram)) {
+            accumulateRows(image, step, histogram);
+        }
+    }
+
+    /**
+     * Reads 8-bit sRGB components interleaved in a byte buffer, the layout of
+     * TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR images.
+     */
+    private static boolean accumulateInterleavedBytes(BufferedImage image, int step, Histogram histogram) {
+        Raster raster = image.getRaster();
+        ColorModel colorModel = image.getColorModel();
+        if (!(raster.getDataBuffer() instanceof DataBufferByte buffer)
+                || buffer.getNumBanks() != 1
+                || !(raster.getSampleModel() instanceof ComponentSampleModel sampleModel)
+                || !(colorModel instanceof ComponentColorModel)
+                || !isPlainSrgb(colorModel)) {
+            return false;
+        }
+
+        byte[] data = buffer.getData();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int pixelStride = sampleModel.getPixelStride();
+        int base = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX() * pixelStride;
+        int redOffset = bandOffsets[0];
+        int greenOffset = bandOffsets[1];
+        int blueOffset = bandOffsets[2];
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int y = 0; y < height; y += step) {
+            int index = base + y * scanlineStride;
+            for (int x = 0; x < width; x += step, index += step * pixelStride) {
+                histogram.add(data[index + redOffset] & 0xFF,
+                        data[index + greenOffset] & 0xFF,
+                        data[index + blueOffset] & 0xFF);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads pixels packed as 0x(AA)RRGGBB ints, the layout of TYPE_INT_RGB
+     * and TYPE_INT_ARGB images.
+     */
+    private static boolean accumulatePackedInts(BufferedImage image, int step, Histogram histogram) {
+        Raster raster = image.getRaster();
+        ColorModel colorModel = image.getColorModel();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt buffer)
+                || buffer.getNumBanks() != 1
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)
+                || !(colorModel instanceof DirectColorModel directColorModel)
+                || !isPlainSrgb(colorModel)
+                || directColorModel.getRedMask() != 0xFF0000
+                || directColorModel.getGreenMask() != 0xFF00
+                || directColorModel.getBlueMask() != 0xFF) {
+            return false;
+        }
+
+        int[] data = buffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int base = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX();
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int y = 0; y < height; y += step) {
+            int index = base + y * scanlineStride;
+            for (int x = 0; x < width; x += step, index += step) {
+                int rgb = data[index];
+                histogram.add((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fallback for any other layout (gray, indexed, 16-bit, non-sRGB):
+     * converts one sampled row at a time through the color model.
+     */
+    private static void accumulateRows(BufferedImage image, int step, Histogram histogram) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y += step) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x += step) {
+                int rgb = row[x];
+                histogram.add((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            }
+        }
+    }
+
+    private static boolean isPlainSrgb(ColorModel colorModel) {
+        return colorModel.getColorSpace().isCS_sRGB()
+                && colorModel.getNumColorComponents() == 3
+                && !colorModel.isAlphaPremultiplied()
+                && colorModel.getComponentSize(0) == 8
+                && colorModel.getComponentSize(1) == 8
+                && colorModel.getComponentSize(2) == 8;
+    }
+
     /**
      * Converts an RGB integer to a hex color string.
      *
@@ -195,4 +461,37 @@ public class ColorExtractor {
     private static String rgbToHex(int rgb) {
         return String.format("#%06X", rgb);
     }
+
+    /**
+     * Per-bucket pixel counts and channel sums, for all the sampled pixels and
+     * for those not excluded as potential background.
+     */
+    private static final class Histogram {
+        final int[] allCounts = new int[BUCKETS];
+        final long[] allSums = new long[BUCKETS * 3];
+        final int[] filteredCounts = new int[BUCKETS];
+        final long[] filteredSums = new long[BUCKETS * 3];
+        long samples;
+        long excluded;
+
+        void add(int r, int g, int b) {
+            int bucket = ((r >> 4) << 8) | ((g >> 4) << 4) | (b >> 4);
+            int sum = bucket * 3;
+            samples++;
+            allCounts[bucket]++;
+            allSums[sum] += r;
+            allSums[sum + 1] += g;
+            allSums[sum + 2] += b;
+
+            int luminance = 2126 * r + 7152 * g + 722 * b;
+            if (luminance < LUMINANCE_MIN || luminance > LUMINANCE_MAX) {
+                excluded++;
+                return;
+            }
+            filteredCounts[bucket]++;
+            filteredSums[sum] += r;
+            filteredSums[sum + 1] += g;
+            filteredSums[sum + 2] += b;
+        }
+    }
 }
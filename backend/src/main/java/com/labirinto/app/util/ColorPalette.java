@@ -0,0 +1,59 @@
+package com.labirinto.app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact text encoding of a photo palette, as stored in {@code Photo.palette}:
+ * 8 hex digits per color, {@code RRGGBB} followed by its weight scaled to
+ * 0-255, heaviest color first. A five-color palette takes at most 40
+ * characters: colors too rare to get a weight are left out.
+ */
+public class ColorPalette {
+
+    private static final int SWATCH_LENGTH = 8;
+
+    // Keeps the encoded palette within the default 255-character column
+    public static final int MAX_SIZE = 16;
+
+    private ColorPalette() {
+    }
+
+    /**
+     * A palette color and the share of the image it covers, from 0 to 1.
+     */
+    public record Swatch(String color, double weight) {
+    }
+
+    public static String encode(List<Swatch> swatches) {
+        StringBuilder encoded = new StringBuilder(swatches.size() * SWATCH_LENGTH);
+        for (Swatch swatch : swatches) {
+            int weight = (int) Math.round(Math.max(0, Math.min(1, swatch.weight())) * 255);
+            if (weight == 0) {
+                continue;
+            }
+            encoded.append(swatch.color(), 1, 7).append(String.format("%02X", weight));
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @return the swatches, empty for a null or malformed palette
+     */
+    public static List<Swatch> decode(String encoded) {
+        if (encoded == null || encoded.length() % SWATCH_LENGTH != 0) {
+            return List.of();
+        }
+        List<Swatch> swatches = new ArrayList<>(encoded.length() / SWATCH_LENGTH);
+        for (int start = 0; start < encoded.length(); start += SWATCH_LENGTH) {
+            try {
+                int weight = Integer.parseInt(encoded, start + 6, start + SWATCH_LENGTH, 16);
+                Integer.parseInt(encoded, start, start + 6, 16);
+                swatches.add(new Swatch("#" + encoded.substring(start, start + 6), Math.round(weight / 2.55) / 100.0));
+            } catch (NumberFormatException e) {
+                return List.of();
+            }
+        }
+        return swatches;
+    }
+}
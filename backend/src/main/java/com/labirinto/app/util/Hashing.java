@@ -0,0 +1,47 @@
+package com.labirinto.app.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Utility class to compute content hashes of binary data.
+ */
+public class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Computes the SHA-256 digest of the given data.
+     *
+     * @param data the bytes to hash
+     * @return lowercase hex string of the digest
+     */
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    /**
+     * Computes the SHA-256 digest of a stream, reading it to the end without
+     * holding it in memory. The stream is not closed.
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) != -1;) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
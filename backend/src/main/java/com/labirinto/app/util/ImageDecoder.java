@@ -0,0 +1,75 @@
+package com.labirinto.app.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.IntBinaryOperator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Utility class to decode images at reduced resolution.
+ * <p>
+ * The subsampling is applied by the {@link ImageReader} while decoding, so
+ * only the preview raster is allocated: a 12 megapixel photo decoded with a
+ * factor of 4 needs 0.75 megapixels of heap instead of 12.
+ */
+public class ImageDecoder {
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * A decoded (possibly subsampled) image with the size of the original.
+     */
+    public record DecodedImage(BufferedImage image, int width, int height) {
+    }
+
+    /**
+     * Decodes the image keeping every {@code n}-th pixel on both axes, where
+     * {@code n} is chosen from the original size.
+     *
+     * @param data        the encoded image
+     * @param subsampling returns the factor for a given (width, height); 1 decodes at full size
+     * @return the decoded image, or null if no reader understands the data
+     */
+    public static DecodedImage decode(byte[] data, IntBinaryOperator subsampling) throws IOException {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, subsampling.applyAsInt(width, height));
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                return new DecodedImage(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes a preview whose longest side is at least {@code minLongSide}
+     * pixels (or the full image, if smaller).
+     */
+    public static DecodedImage decodePreview(byte[] data, int minLongSide) throws IOException {
+        return decode(data, (width, height) -> Math.max(width, height) / minLongSide);
+    }
+}
@@ -0,0 +1,52 @@
+package com.labirinto.app.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Image formats recognized from the first bytes of their content, to serve
+ * each image with its own content type.
+ */
+public enum ImageFormat {
+    JPEG("image/jpeg", new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF }),
+    PNG("image/png", new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' }),
+    GIF("image/gif", "GIF8".getBytes(StandardCharsets.US_ASCII)),
+    BMP("image/bmp", "BM".getBytes(StandardCharsets.US_ASCII)),
+    // RIFF container: the format is at offset 8, after the chunk size
+    WEBP("image/webp", "RIFF".getBytes(StandardCharsets.US_ASCII));
+
+    /**
+     * Bytes of content needed by {@link #detect}.
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private static final byte[] WEBP_FORMAT = "WEBP".getBytes(StandardCharsets.US_ASCII);
+
+    private final String mediaType;
+    private final byte[] signature;
+
+    ImageFormat(String mediaType, byte[] signature) {
+        this.mediaType = mediaType;
+        this.signature = signature;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public static Optional<ImageFormat> detect(byte[] header) {
+        for (ImageFormat format : values()) {
+            if (startsWith(header, 0, format.signature)
+                    && (format != WEBP || startsWith(header, 8, WEBP_FORMAT))) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, int offset, byte[] prefix) {
+        return header.length >= offset + prefix.length
+                && Arrays.equals(header, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -0,0 +1,78 @@
+package com.labirinto.app.util;
+
+/**
+ * A color in the CIE L*a*b* space (D65 white point), where the Euclidean
+ * distance (CIE76 ΔE) approximates the perceived difference between colors.
+ */
+public record LabColor(double l, double a, double b) {
+
+    private static final double XN = 0.95047;
+    private static final double YN = 1.0;
+    private static final double ZN = 1.08883;
+
+    /**
+     * @param hex color as "#RRGGBB" or "RRGGBB"
+     * @throws IllegalArgumentException if the string is not a valid hex color
+     */
+    public static LabColor fromHex(String hex) {
+        String digits = hex.startsWith("#") ? hex.substring(1) : hex;
+        if (digits.length() != 6) {
+            throw new IllegalArgumentException("Colore non valido: " + hex);
+        }
+        try {
+            return fromRgb(Integer.parseInt(digits, 16));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Colore non valido: " + hex, e);
+        }
+    }
+
+    /**
+     * @return whether {@link #fromHex(String)} accepts the string
+     */
+    public static boolean isHex(String hex) {
+        String digits = hex.startsWith("#") ? hex.substring(1) : hex;
+        if (digits.length() != 6) {
+            return false;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (Character.digit(digits.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static LabColor fromRgb(int rgb) {
+        double r = linearize((rgb >> 16) & 0xFF);
+        double g = linearize((rgb >> 8) & 0xFF);
+        double b = linearize(rgb & 0xFF);
+
+        double x = (0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / XN;
+        double y = (0.2126729 * r + 0.7151522 * g + 0.0721750 * b) / YN;
+        double z = (0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / ZN;
+
+        double fx = f(x);
+        double fy = f(y);
+        double fz = f(z);
+        return new LabColor(116.0 * fy - 16.0, 500.0 * (fx - fy), 200.0 * (fy - fz));
+    }
+
+    /**
+     * CIE76 color difference.
+     */
+    public double deltaE(LabColor other) {
+        double dl = l - other.l;
+        double da = a - other.a;
+        double db = b - other.b;
+        return Math.sqrt(dl * dl + da * da + db * db);
+    }
+
+    private static double linearize(int channel) {
+        double c = channel / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double f(double t) {
+        return t > 216.0 / 24389.0 ? Math.cbrt(t) : (24389.0 / 27.0 * t + 16.0) / 116.0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.labirinto.app.util;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of images, to find copies of the same photo that
+ * were re-encoded, resized or slightly retouched.
+ * <p>
+ * The image is reduced to a 9x8 grid of average luminances and every bit of
+ * the 64-bit hash tells whether a cell is brighter than its right neighbour.
+ * Gradients survive resampling and compression, so copies of a photo end up
+ * a few bits apart, while unrelated photos differ in about half of them.
+ */
+public class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+
+    // Pixels sampled on each axis at most: the cells only need their averages
+    private static final int MAX_SAMPLES_PER_SIDE = 256;
+
+    private PerceptualHash() {
+    }
+
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int step = Math.max(1, Math.max(width, height) / MAX_SAMPLES_PER_SIDE);
+        long[] luminance = new long[COLUMNS * ROWS];
+        int[] samples = new int[COLUMNS * ROWS];
+        int[] row = new int[width];
+
+        for (int y = 0; y < height; y += step) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * ROWS / height * COLUMNS;
+            for (int x = 0; x < width; x += step) {
+                int rgb = row[x];
+                int cell = cellRow + x * COLUMNS / width;
+                luminance[cell] += 299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF);
+                samples[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLUMNS - 1; c++) {
+                int cell = r * COLUMNS + c;
+                hash <<= 1;
+                if (average(luminance, samples, cell) > average(luminance, samples, cell + 1)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Number of differing bits, from 0 (same picture) to 64.
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static double average(long[] luminance, int[] samples, int cell) {
+        return samples[cell] > 0 ? (double) luminance[cell] / samples[cell] : 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.labirinto.app.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factories for the application's own worker threads, named
+ * {@code <name>-1}, {@code <name>-2}, ...
+ */
+public class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * Virtual threads when {@code virtual} is set (spring.threads.virtual.enabled),
+     * daemon platform threads otherwise.
+     */
+    public static ThreadFactory create(String name, boolean virtual) {
+        return virtual ? Thread.ofVirtual().name(name + "-", 1).factory()
+                : Thread.ofPlatform().name(name + "-", 1).daemon().factory();
+    }
+}
@@ -0,0 +1,98 @@
+package com.labirinto.app.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Utility class to produce downscaled thumbnails from decoded images: JPEG,
+ * or PNG for images with transparency, which JPEG would flatten.
+ */
+public class ThumbnailGenerator {
+
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private ThumbnailGenerator() {
+    }
+
+    /**
+     * Scales the image so that its longest side is at most {@code maxSide}
+     * pixels and encodes it as JPEG, or as PNG if it has an alpha channel.
+     * Images already smaller are only re-encoded.
+     *
+     * @param image   the decoded source image
+     * @param maxSide the longest side of the thumbnail in pixels
+     * @return the JPEG or PNG bytes of the thumbnail
+     */
+    public static byte[] generate(BufferedImage image, int maxSide) throws IOException {
+        boolean alpha = image.getColorModel().hasAlpha();
+        BufferedImage scaled = scale(image, maxSide, alpha);
+        return alpha ? encodePng(scaled) : encodeJpeg(scaled);
+    }
+
+    static BufferedImage scale(BufferedImage image, int maxSide, boolean alpha) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = Math.min(1.0, (double) maxSide / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        // Halve the image step by step: a single bilinear pass from a large
+        // source to a tiny target skips most pixels and produces aliasing.
+        BufferedImage current = image;
+        int currentWidth = width;
+        int currentHeight = height;
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+            current = draw(current, currentWidth, currentHeight, alpha);
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, boolean alpha) {
+        BufferedImage target = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha channel: flatten transparent areas on white
+            g.drawImage(source, 0, 0, width, height, alpha ? null : Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
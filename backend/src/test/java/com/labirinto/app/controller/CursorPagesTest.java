@@ -0,0 +1,106 @@
+package com.labirinto.app.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class CursorPagesTest {
+
+    private record Item(Long id, String title, String text) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CursorPages cursorPages;
+
+    @BeforeEach
+    void setUp() {
+        cursorPages = new CursorPages(objectMapper, new MappingJackson2CborHttpMessageConverter(),
+                new MappingJackson2SmileHttpMessageConverter(), new ContentNegotiationManager());
+        ReflectionTestUtils.setField(cursorPages, "defaultLimit", 2);
+        ReflectionTestUtils.setField(cursorPages, "maxLimit", 3);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void fetchesOneRowMoreThanThePage() {
+        assertThat(cursorPages.fetchLimit(null).max()).isEqualTo(3);
+        assertThat(cursorPages.fetchLimit(1).max()).isEqualTo(2);
+        assertThat(cursorPages.fetchLimit(1000).max()).isEqualTo(4);
+        assertThat(cursorPages.fetchLimit(0).max()).isEqualTo(2);
+    }
+
+    @Test
+    void returnsTheCursorOfTheLastItemWhenMoreFollow() throws IOException {
+        List<Item> fetched = List.of(item(1), item(2), item(3));
+
+        ResponseEntity<StreamingResponseBody> response = cursorPages.toResponse(fetched, null, null,
+                item -> item.id().toString());
+
+        assertThat(response.getHeaders().getFirst(CursorPages.NEXT_CURSOR_HEADER)).isEqualTo("2");
+        assertThat(read(response)).extracting(item -> item.get("id")).containsExactly(1, 2);
+    }
+
+    @Test
+    void lastPageHasNoCursor() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = cursorPages.toResponse(List.of(item(5)), null, null,
+                item -> item.id().toString());
+
+        assertThat(response.getHeaders().containsKey(CursorPages.NEXT_CURSOR_HEADER)).isFalse();
+        assertThat(read(response)).hasSize(1);
+    }
+
+    @Test
+    void keepsOnlyTheRequestedFields() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = cursorPages.toResponse(List.of(item(1)), null,
+                Set.of("id", "title"), item -> item.id().toString());
+
+        assertThat(read(response)).containsExactly(Map.of("id", 1, "title", "title 1"));
+    }
+
+    @Test
+    void parsesPairCursors() {
+        assertThat(CursorPages.parsePairCursor(null)).hasValueSatisfying(
+                cursor -> assertThat(cursor).containsExactly(0, 0));
+        assertThat(CursorPages.parsePairCursor(CursorPages.pairCursor(7L, 42L))).hasValueSatisfying(
+                cursor -> assertThat(cursor).containsExactly(7, 42));
+        assertThat(CursorPages.parsePairCursor("7")).isEmpty();
+        assertThat(CursorPages.parsePairCursor("7:x")).isEmpty();
+        assertThat(CursorPages.parsePairCursor("1:2:3")).isEmpty();
+    }
+
+    private static Item item(long id) {
+        return new Item(id, "title " + id, "text " + id);
+    }
+
+    private List<Map<String, Object>> read(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return objectMapper.readValue(out.toByteArray(), new TypeReference<>() {
+        });
+    }
+}
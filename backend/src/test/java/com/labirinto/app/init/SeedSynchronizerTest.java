@@ -0,0 +1,106 @@
+package com.labirinto.app.init;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.labirinto.app.entities.Poem;
+import com.labirinto.app.entities.SeedEntry;
+import com.labirinto.app.entities.UserPhoto;
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+import com.labirinto.app.init.SeedSynchronizer.SyncResult;
+import com.labirinto.app.repository.PoemRepository;
+import com.labirinto.app.repository.SeedEntryRepository;
+import com.labirinto.app.repository.UserPhotoRepository;
+import com.labirinto.app.service.PhotoDuplicateIndex;
+import com.labirinto.app.service.PhotoService;
+
+@DataJpaTest
+@Import(SeedSynchronizer.class)
+class SeedSynchronizerTest {
+
+    @Autowired
+    private SeedSynchronizer seedSynchronizer;
+
+    @Autowired
+    private PoemRepository poemRepository;
+
+    @Autowired
+    private SeedEntryRepository seedEntryRepository;
+
+    @Autowired
+    private UserPhotoRepository userPhotoRepository;
+
+    @MockBean
+    private PhotoService photoService;
+
+    @MockBean
+    private PhotoBulkImporter photoBulkImporter;
+
+    @MockBean
+    private PhotoDuplicateIndex photoDuplicateIndex;
+
+    @Test
+    void updatesRenamedPoemsInPlace() throws Exception {
+        assertThat(sync("/seed/v1")).isEqualTo(new SyncResult(3, 0, 0, 0, 0));
+        Long alba = idByTitle().get("Alba");
+        Long sera = idByTitle().get("Sera");
+
+        // "Alba" renamed, "Sera" rewritten, "Notte" removed, "Mezzogiorno" added
+        assertThat(sync("/seed/v2")).isEqualTo(new SyncResult(1, 2, 1, 0, 0));
+
+        Map<String, Long> ids = idByTitle();
+        assertThat(ids).containsOnlyKeys("Aurora", "Sera", "Mezzogiorno");
+        assertThat(ids.get("Aurora")).isEqualTo(alba);
+        assertThat(ids.get("Sera")).isEqualTo(sera);
+        assertThat(seedEntryRepository.findBySourceStartingWith(SeedSynchronizer.POEMS + "#"))
+                .extracting(SeedEntry::getSource, SeedEntry::getEntityId)
+                .containsExactlyInAnyOrder(
+                        tuple("poems.json#Aurora", alba),
+                        tuple("poems.json#Sera", sera),
+                        tuple("poems.json#Mezzogiorno", ids.get("Mezzogiorno")));
+
+        assertThat(sync("/seed/v2")).isEqualTo(new SyncResult(0, 0, 0, 3, 0));
+    }
+
+    @Test
+    void skipsAMissingImagesDirectory() throws Exception {
+        // The seed directories of this test only hold poems.json
+        ReflectionTestUtils.setField(seedSynchronizer, "inputDataDir", "/seed/v1");
+
+        assertThat(seedSynchronizer.syncPhotos()).isEqualTo(new SyncResult(0, 0, 0, 0, 0));
+    }
+
+    @Test
+    void movesPhotoLinksToTheReplacement() {
+        userPhotoRepository.saveAllAndFlush(List.of(
+                new UserPhoto(new UserPhotoId(1L, 10L)),
+                new UserPhoto(new UserPhotoId(2L, 10L)),
+                new UserPhoto(new UserPhotoId(2L, 20L)),
+                new UserPhoto(new UserPhotoId(3L, 30L))));
+
+        assertThat(userPhotoRepository.movePhotoLinks(10L, 20L)).isEqualTo(2);
+
+        assertThat(userPhotoRepository.findAllIds()).containsExactlyInAnyOrder(
+                new UserPhotoId(1L, 20L), new UserPhotoId(2L, 20L), new UserPhotoId(3L, 30L));
+    }
+
+    private SyncResult sync(String inputDataDir) throws Exception {
+        ReflectionTestUtils.setField(seedSynchronizer, "inputDataDir", inputDataDir);
+        return seedSynchronizer.syncPoems();
+    }
+
+    private Map<String, Long> idByTitle() {
+        return poemRepository.findAll().stream().collect(Collectors.toMap(Poem::getTitle, Poem::getId));
+    }
+}
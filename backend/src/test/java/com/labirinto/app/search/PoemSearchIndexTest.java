@@ -0,0 +1,109 @@
+package com.labirinto.app.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import com.labirinto.app.dto.PoemSearchResult;
+import com.labirinto.app.entities.Poem;
+import com.labirinto.app.repository.PoemRepository;
+
+class PoemSearchIndexTest {
+
+    private PoemSearchIndex index;
+
+    @BeforeEach
+    void buildIndex() {
+        PoemRepository poemRepository = mock(PoemRepository.class);
+        when(poemRepository.findAll()).thenReturn(List.of(
+                new Poem(1L, "La città di notte", "Le luci della città si spengono una a una."),
+                new Poem(2L, "Il mare", "Onde sul mare, e la notte che scende sulla città."),
+                new Poem(3L, "Mattino", "Il sole sul mare e il profumo del pane."),
+                new Poem(4L, "Marea", "Sale e scende, come ogni sera."),
+                new Poem(5L, "Senza titolo", "Parole sparse nel vento.")));
+        index = new PoemSearchIndex(poemRepository);
+        index.rebuild();
+    }
+
+    @Test
+    void requiresEveryQueryTerm() {
+        assertThat(ids(index.search("mare notte", PageRequest.of(0, 10)))).containsExactly(2L);
+        assertThat(index.search("mare vento", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void ranksTitleMatchesFirst() {
+        assertThat(ids(index.search("mare", PageRequest.of(0, 10))).get(0)).isEqualTo(2L);
+        assertThat(ids(index.search("città", PageRequest.of(0, 10)))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void matchesPrefixesBelowExactTerms() {
+        // "mare" exactly in 2 and 3, as the prefix of "marea" in 4
+        assertThat(ids(index.search("mare", PageRequest.of(0, 10)))).containsExactlyInAnyOrder(2L, 3L, 4L);
+        assertThat(ids(index.search("spars", PageRequest.of(0, 10)))).containsExactly(5L);
+    }
+
+    @Test
+    void matchesEveryExpansionOfAShortPrefix() {
+        // 100 distinct words starting with "so", one per poem, and a second
+        // query term they all share
+        for (long id = 100; id < 200; id++) {
+            index.index(new Poem(id, "Verso " + id, "sogno" + toLetters(id) + " lontano"));
+        }
+
+        assertThat(index.search("so lontano", PageRequest.of(0, 200)).getTotalElements()).isEqualTo(100);
+        assertThat(ids(index.search("so lontano", PageRequest.of(0, 200)))).contains(100L, 199L);
+    }
+
+    @Test
+    void ignoresAccentsAndCase() {
+        assertThat(ids(index.search("CITTA", PageRequest.of(0, 10))))
+                .isEqualTo(ids(index.search("città", PageRequest.of(0, 10))));
+        assertThat(index.search("di la", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void pagesResults() {
+        Page<PoemSearchResult> all = index.search("mare", PageRequest.of(0, 10));
+        Page<PoemSearchResult> second = index.search("mare", PageRequest.of(1, 2));
+
+        assertThat(second.getTotalElements()).isEqualTo(3);
+        assertThat(ids(second)).containsExactly(all.getContent().get(2).getId());
+    }
+
+    @Test
+    void followsChanges() {
+        index.index(new Poem(6L, "Notturno", "La città dorme."));
+        index.remove(1L);
+
+        assertThat(ids(index.search("città", PageRequest.of(0, 10)))).containsExactlyInAnyOrder(2L, 6L);
+    }
+
+    @Test
+    void findsTitlesBySubstring() {
+        assertThat(index.findIdsByTitleContaining("MAR")).containsExactly(2L, 4L);
+        assertThat(index.findIdsByTitleContaining("tà di")).containsExactly(1L);
+        assertThat(index.findIdsByTitleContaining("onde")).isEmpty();
+    }
+
+    // 100 -> "baa": a distinct suffix made of letters for every poem
+    private static String toLetters(long number) {
+        StringBuilder letters = new StringBuilder();
+        for (char digit : Long.toString(number).toCharArray()) {
+            letters.append((char) ('a' + digit - '0'));
+        }
+        return letters.toString();
+    }
+
+    private static List<Long> ids(Page<PoemSearchResult> page) {
+        return page.getContent().stream().map(PoemSearchResult::getId).toList();
+    }
+}
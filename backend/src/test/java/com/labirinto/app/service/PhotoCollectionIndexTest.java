@@ -0,0 +1,68 @@
+package com.labirinto.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.labirinto.app.entities.UserPhoto.UserPhotoId;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.repository.UserPhotoRepository;
+
+class PhotoCollectionIndexTest {
+
+    private static final Long USER_ID = 1L;
+
+    private PhotoCollectionIndex index;
+
+    @BeforeEach
+    void buildIndex() {
+        PhotoRepository photoRepository = mock(PhotoRepository.class);
+        UserPhotoRepository userPhotoRepository = mock(UserPhotoRepository.class);
+        when(photoRepository.findAllIds()).thenReturn(LongStream.rangeClosed(1, 200).boxed().toList());
+        when(userPhotoRepository.findAllIds()).thenReturn(List.of(new UserPhotoId(USER_ID, 7L)));
+        index = new PhotoCollectionIndex(photoRepository, userPhotoRepository);
+        index.rebuild();
+    }
+
+    @Test
+    void dealsEveryUncollectedPhotoOnce() {
+        BitSet dealt = new BitSet();
+        List<Long> photoIds = new ArrayList<>();
+
+        for (Optional<Long> photoId = index.deal(USER_ID, dealt); photoId.isPresent();
+                photoId = index.deal(USER_ID, dealt)) {
+            photoIds.add(photoId.get());
+        }
+
+        assertThat(photoIds).hasSize(199).doesNotHaveDuplicates().doesNotContain(7L);
+        assertThat(index.countUndealt(USER_ID, dealt)).isZero();
+    }
+
+    @Test
+    void countsWhatIsLeftToDeal() {
+        BitSet dealt = new BitSet();
+        Long first = index.deal(USER_ID, dealt).orElseThrow();
+        Long second = index.deal(USER_ID, dealt).orElseThrow();
+
+        assertThat(index.countUndealt(USER_ID, dealt)).isEqualTo(197);
+
+        // A dealt photo collected afterwards is not subtracted twice
+        index.collect(USER_ID, first);
+        assertThat(index.countUndealt(USER_ID, dealt)).isEqualTo(197);
+
+        Long undealt = LongStream.rangeClosed(1, 200).boxed()
+                .filter(id -> id != 7L && !id.equals(first) && !id.equals(second))
+                .findFirst().orElseThrow();
+        index.removePhoto(undealt);
+        assertThat(index.countUndealt(USER_ID, dealt)).isEqualTo(196);
+    }
+}
@@ -0,0 +1,101 @@
+package com.labirinto.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.labirinto.app.dto.PhotoHash;
+import com.labirinto.app.repository.PhotoRepository;
+import com.labirinto.app.util.PerceptualHash;
+
+/**
+ * The multi-index lookup must find a photo exactly when a linear scan over
+ * all the hashes finds one within the maximum distance, and at the same
+ * distance.
+ */
+class PhotoDuplicateIndexTest {
+
+    private static final int MAX_DISTANCE = 6;
+
+    private final Random random = new Random(42);
+    private final Map<Long, Long> hashByPhotoId = new HashMap<>();
+    private PhotoDuplicateIndex index;
+
+    private record Hash(Long getId, Long getPerceptualHash) implements PhotoHash {
+    }
+
+    @BeforeEach
+    void buildIndex() {
+        List<PhotoHash> photos = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            long hash = random.nextLong();
+            hashByPhotoId.put(id, hash);
+            photos.add(new Hash(id, hash));
+        }
+        PhotoRepository photoRepository = mock(PhotoRepository.class);
+        when(photoRepository.findPerceptualHashes()).thenReturn(photos);
+        index = new PhotoDuplicateIndex(photoRepository, MAX_DISTANCE);
+        index.rebuild();
+    }
+
+    @Test
+    void matchesLinearScan() {
+        List<Long> ids = new ArrayList<>(hashByPhotoId.keySet());
+        for (int i = 0; i < 2000; i++) {
+            long target = hashByPhotoId.get(ids.get(random.nextInt(ids.size())));
+            // From exact copies to hashes just past the maximum distance
+            long query = flipBits(target, random.nextInt(MAX_DISTANCE + 3));
+
+            assertThat(index.findDuplicate(query).map(id -> distance(query, id)))
+                    .as("query %016x", query)
+                    .isEqualTo(linearScan(query));
+        }
+        for (int i = 0; i < 200; i++) {
+            long query = random.nextLong();
+            assertThat(index.findDuplicate(query).map(id -> distance(query, id))).isEqualTo(linearScan(query));
+        }
+    }
+
+    @Test
+    void followsAdditionsAndRemovals() {
+        long hash = hashByPhotoId.get(17L);
+
+        index.remove(17L);
+        hashByPhotoId.remove(17L);
+        assertThat(index.findDuplicate(hash).map(id -> distance(hash, id))).isEqualTo(linearScan(hash));
+
+        long copy = flipBits(hash, 2);
+        assertThat(index.addUnlessDuplicate(5000L, hash)).isEmpty();
+        assertThat(index.addUnlessDuplicate(5001L, copy)).contains(5000L);
+        assertThat(index.findDuplicate(copy)).contains(5000L);
+    }
+
+    private Optional<Integer> linearScan(long query) {
+        return hashByPhotoId.values().stream()
+                .map(hash -> PerceptualHash.distance(query, hash))
+                .filter(distance -> distance <= MAX_DISTANCE)
+                .min(Integer::compare);
+    }
+
+    private int distance(long query, Long photoId) {
+        return PerceptualHash.distance(query, hashByPhotoId.get(photoId));
+    }
+
+    private long flipBits(long hash, int bits) {
+        long flipped = hash;
+        while (Long.bitCount(flipped ^ hash) < bits) {
+            flipped ^= 1L << random.nextInt(64);
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,166 @@
+package com.labirinto.app.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The raster readers and primitive histograms must pick the same color as the
+ * original per-pixel {@code getRGB} implementation, kept below as a reference.
+ */
+class ColorExtractorTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {
+            BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_BYTE_INDEXED
+    })
+    void matchesPerPixelImplementation(int imageType) {
+        for (long seed = 1; seed <= 5; seed++) {
+            BufferedImage image = fixture(imageType, seed);
+
+            assertThat(ColorExtractor.extractRepresentativeColor(image, ColorExtractor.Mode.ACCURATE))
+                    .as("seed %d", seed)
+                    .isEqualTo(ReferenceExtractor.getDominantColor(image));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB })
+    void readsSubimagesAtTheirOffset(int imageType) {
+        BufferedImage subimage = fixture(imageType, 7).getSubimage(37, 21, 120, 90);
+
+        assertThat(ColorExtractor.extractRepresentativeColor(subimage, ColorExtractor.Mode.ACCURATE))
+                .isEqualTo(ReferenceExtractor.getDominantColor(subimage));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_INDEXED })
+    void analyzeAgreesWithExtraction(int imageType) {
+        BufferedImage image = fixture(imageType, 3);
+
+        ColorExtractor.ColorAnalysis analysis = ColorExtractor.analyze(image, ColorExtractor.Mode.ACCURATE, 5);
+
+        assertThat(analysis.representativeColor())
+                .isEqualTo(ColorExtractor.extractRepresentativeColor(image, ColorExtractor.Mode.ACCURATE));
+        assertThat(ColorPalette.decode(analysis.palette())).hasSizeBetween(1, 5);
+    }
+
+    /**
+     * A light background with a few colored shapes and per-pixel noise, drawn
+     * in the given image type (gray and indexed images convert on write).
+     */
+    private static BufferedImage fixture(int imageType, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(200, 150, imageType);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(245, 245, 240));
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            for (int i = 0; i < 6; i++) {
+                graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                graphics.fillOval(random.nextInt(150), random.nextInt(100), 20 + random.nextInt(80),
+                        20 + random.nextInt(60));
+            }
+        } finally {
+            graphics.dispose();
+        }
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int noise = random.nextInt(17) - 8;
+                int r = clamp(((rgb >> 16) & 0xFF) + noise);
+                int g = clamp(((rgb >> 8) & 0xFF) + noise);
+                int b = clamp((rgb & 0xFF) + noise);
+                image.setRGB(x, y, 0xFF000000 | r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int channel) {
+        return Math.max(0, Math.min(255, channel));
+    }
+
+    /**
+     * The dominant color algorithm as it was before the raster rewrite: every
+     * pixel through getRGB, with boxed per-bucket statistics.
+     */
+    private static final class ReferenceExtractor {
+
+        static String getDominantColor(BufferedImage image) {
+            Map<Integer, long[]> bucketMapAll = new HashMap<>();
+            Map<Integer, long[]> bucketMapFiltered = new HashMap<>();
+            int totalSamples = 0;
+            int excludedSamples = 0;
+
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int rgb = image.getRGB(x, y);
+                    int r = (rgb >> 16) & 0xFF;
+                    int g = (rgb >> 8) & 0xFF;
+                    int b = rgb & 0xFF;
+
+                    totalSamples++;
+                    double luminance = 0.2126 * r + 0.7152 * g + 0.0722 * b;
+                    boolean excluded = luminance < 30 || luminance > 240;
+                    if (excluded) {
+                        excludedSamples++;
+                    }
+
+                    int bucket = ((r >> 4) << 8) | ((g >> 4) << 4) | (b >> 4);
+                    accumulate(bucketMapAll.computeIfAbsent(bucket, k -> new long[4]), r, g, b);
+                    if (!excluded) {
+                        accumulate(bucketMapFiltered.computeIfAbsent(bucket, k -> new long[4]), r, g, b);
+                    }
+                }
+            }
+
+            double excludedRatio = (double) excludedSamples / (double) totalSamples;
+            Map<Integer, long[]> chosenMap = bucketMapFiltered;
+            if (bucketMapFiltered.isEmpty() || excludedRatio >= 0.40) {
+                chosenMap = bucketMapAll;
+            }
+
+            int bestBucket = -1;
+            double bestScore = -1.0;
+            for (Map.Entry<Integer, long[]> e : chosenMap.entrySet()) {
+                long[] st = e.getValue();
+                int avgR = (int) (st[1] / st[0]);
+                int avgG = (int) (st[2] / st[0]);
+                int avgB = (int) (st[3] / st[0]);
+                int max = Math.max(avgR, Math.max(avgG, avgB));
+                int min = Math.min(avgR, Math.min(avgG, avgB));
+                double saturation = (max == 0) ? 0.0 : ((double) (max - min) / (double) max);
+                double score = st[0] * (1.0 + saturation);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestBucket = e.getKey();
+                }
+            }
+
+            long[] best = chosenMap.get(bestBucket);
+            int rgb = (int) (best[1] / best[0]) << 16 | (int) (best[2] / best[0]) << 8 | (int) (best[3] / best[0]);
+            return String.format("#%06X", rgb);
+        }
+
+        private static void accumulate(long[] stats, int r, int g, int b) {
+            stats[0]++;
+            stats[1] += r;
+            stats[2] += g;
+            stats[3] += b;
+        }
+    }
+}
@@ -1,11 +1,29 @@
 export const API_URL = "http://localhost:8080";
 
+// The backend can also answer in CBOR or Smile: ask explicitly for JSON
+// (compression is negotiated by the browser)
+const ACCEPT_JSON = { Accept: "application/json" };
+
 export async function httpGet(path: string) {
-    const r = await fetch(API_URL + path);
+    const r = await fetch(API_URL + path, { headers: ACCEPT_JSON });
     if (!r.ok) throw new Error("request error");
     return r.json();
 }
 
+// Fetches every page of a /list endpoint, following the X-Next-Cursor header
+export async function httpGetAllPages(path: string, limit = 500) {
+    const items: any[] = [];
+    let cursor: string | null = null;
+    do {
+        const query: string = `?limit=${limit}` + (cursor ? `&after=${encodeURIComponent(cursor)}` : "");
+        const r = await fetch(API_URL + path + query, { headers: ACCEPT_JSON });
+        if (!r.ok) throw new Error("request error");
+        items.push(...(await r.json()));
+        cursor = r.headers.get("X-Next-Cursor");
+    } while (cursor);
+    return items;
+}
+
 export async function httpPost(path: string, data: any) {
     const r = await fetch(API_URL + path, {
         method: "POST",
@@ -16,6 +34,26 @@ export async function httpPost(path: string, data: any) {
     return r.json();
 }
 
+// With keepalive the request completes even if the page is being closed
+export async function httpPostNoContent(path: string, data: any, keepalive = false) {
+    const r = await fetch(API_URL + path, {
+        method: "POST",
+        headers: { "Content-Type": "application/json" },
+        body: JSON.stringify(data),
+        keepalive
+    });
+    if (!r.ok) throw new Error("request error");
+}
+
+export async function httpPostForm(path: string, form: FormData) {
+    const r = await fetch(API_URL + path, {
+        method: "POST",
+        body: form
+    });
+    if (!r.ok) throw new Error("request error");
+    return r.json();
+}
+
 export async function httpPut(path: string, data: any) {
     const r = await fetch(API_URL + path, {
         method: "PUT",
@@ -0,0 +1,29 @@
+import { httpGet, httpPost, httpDelete } from "./httpClient";
+import { Photo } from "../models/Photo";
+
+export interface LabyrinthSession {
+    sessionId: string;
+    photos: Photo[];
+    remaining: number;
+}
+
+function toSession(data: any): LabyrinthSession {
+    return { sessionId: data.sessionId, photos: Photo.fromJsonArray(data.photos), remaining: data.remaining };
+}
+
+// Start a labyrinth run: the server deals the user's uncollected photos in random order
+export async function startLabyrinthSession(userId: number, count: number) {
+    const data = await httpPost(`/api/labyrinth/session/${userId}?count=${count}`, {});
+    return toSession(data);
+}
+
+// Get the next photos of a running session
+export async function fetchNextSessionPhotos(sessionId: string, count = 1) {
+    const data = await httpGet(`/api/labyrinth/session/${sessionId}/next?count=${count}`);
+    return toSession(data);
+}
+
+// End a labyrinth run
+export function endLabyrinthSession(sessionId: string) {
+    return httpDelete(`/api/labyrinth/session/${sessionId}`);
+}
@@ -1,9 +1,9 @@
-import { httpGet, httpPost, httpDelete } from "./httpClient";
+import { httpGet, httpGetAllPages, httpPostForm, httpDelete } from "./httpClient";
 import { Photo } from "../models/Photo";
 
 // Get all photos
 export async function fetchPhotoList() {
-    const data = await httpGet("/api/photo/list");
+    const data = await httpGetAllPages("/api/photo/list");
     return Photo.fromJsonArray(data);
 }
 
@@ -13,10 +13,27 @@ export async function fetchPhotoById(id: number) {
     return Photo.fromJson(data);
 }
 
-// Upload new photo
-export async function uploadPhoto(imageData: ArrayBuffer | string) {
-    const data = await httpPost("/api/photo/add", { image: imageData });
-    return Photo.fromJson(data);
+export type PhotoStatus = "PENDING" | "READY" | "FAILED" | "DUPLICATE";
+
+export interface PhotoIngestionStatus {
+    id: number;
+    status: PhotoStatus;
+    // Set when status is DUPLICATE: the photo the upload is a copy of
+    duplicateOf: number | null;
+    statusUrl: string;
+}
+
+// Upload new photo: it is processed in the background, poll getPhotoStatus until
+// it is no longer PENDING
+export function uploadPhoto(file: Blob): Promise<PhotoIngestionStatus> {
+    const form = new FormData();
+    form.append("file", file);
+    return httpPostForm("/api/photo/add", form);
+}
+
+// Get the processing status of an uploaded photo
+export function getPhotoStatus(id: number): Promise<PhotoIngestionStatus> {
+    return httpGet(`/api/photo/${id}/status`);
 }
 
 // Delete photo
@@ -29,9 +46,15 @@ export function getPhotoCount() {
     return httpGet("/api/photo/count");
 }
 
-// Get photos by representative color
-export async function getPhotosByColor(color: string) {
-    const data = await httpGet(`/api/photo/by-color/${color}`);
+// Get photos whose representative color is within deltaE of the given color, closest first
+export async function getPhotosByColor(color: string, deltaE = 10) {
+    const data = await httpGet(`/api/photo/by-color/${encodeURIComponent(color)}?deltaE=${deltaE}`);
+    return Photo.fromJsonArray(data);
+}
+
+// Get the k photos closest to the given color
+export async function getNearestPhotosByColor(color: string, k = 10) {
+    const data = await httpGet(`/api/photo/by-color/${encodeURIComponent(color)}/nearest?k=${k}`);
     return Photo.fromJsonArray(data);
 }
 
@@ -1,9 +1,15 @@
-import { httpGet, httpPost, httpPut, httpDelete } from "./httpClient";
+import { httpGet, httpGetAllPages, httpPost, httpPut, httpDelete } from "./httpClient";
 import { Poem } from "../models/Poem";
 
+export interface PoemSearchResult {
+    id: number;
+    title: string;
+    score: number;
+}
+
 // Get all poems
 export async function fetchPoemList() {
-    const data = await httpGet("/api/poem/list");
+    const data = await httpGetAllPages("/api/poem/list");
     return Poem.fromJsonArray(data);
 }
 
@@ -35,8 +41,8 @@ export function getPoemCount() {
     return httpGet("/api/poem/count");
 }
 
-// Search poems by title
-export async function searchPoemsByTitle(title: string) {
-    const data = await httpGet(`/api/poem/search/${title}`);
-    return Poem.fromJsonArray(data);
+// Full-text search over poem titles and texts, best matches first
+export async function searchPoems(query: string, page = 0, size = 20): Promise<PoemSearchResult[]> {
+    const data = await httpGet(`/api/poem/search?q=${encodeURIComponent(query)}&page=${page}&size=${size}`);
+    return data.content;
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
-import { httpGet, httpPost, httpPut, httpDelete } from "./httpClient";
+import { httpGet, httpGetAllPages, httpPost, httpPut, httpDelete } from "./httpClient";
 import { User } from "../models/User";
+import { UserDashboard } from "../models/UserDashboard";
 
 // Get all users
 export async function fetchUserList() {
-    const data = await httpGet("/api/user/list");
+    const data = await httpGetAllPages("/api/user/list");
     return User.fromJsonArray(data);
 }
 
@@ -13,6 +14,12 @@ export async function fetchUserById(id: number) {
     return User.fromJson(data);
 }
 
+// Get user with collected photos and poems in one request
+export async function fetchUserDashboard(id: number) {
+    const data = await httpGet(`/api/user/${id}/dashboard`);
+    return UserDashboard.fromJson(data);
+}
+
 // Create new user
 export async function createUser(username: string) {
     const data = await httpPost("/api/user/add", { username });
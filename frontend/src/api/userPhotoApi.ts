@@ -1,9 +1,9 @@
-import { httpGet, httpPost, httpDelete } from "./httpClient";
+import { httpGet, httpGetAllPages, httpPost, httpPostNoContent, httpDelete } from "./httpClient";
 import { UserPhoto } from "../models/UserPhoto";
 
 // Get all user-photo associations
 export async function fetchUserPhotoList() {
-    const data = await httpGet("/api/user_photo/list");
+    const data = await httpGetAllPages("/api/user_photo/list");
     return UserPhoto.fromJsonArray(data);
 }
 
@@ -13,6 +13,17 @@ export async function addPhotoToUser(userId: number, photoId: number) {
     return UserPhoto.fromJson(data);
 }
 
+// Add several user-photo links in one request; photos already collected are ignored.
+// Sent with keepalive, so it can be flushed while the page is closing.
+export async function addUserPhotos(links: { userId: number; photoId: number }[]) {
+    await httpPostNoContent("/api/user_photo/batch/add", links, true);
+}
+
+// Remove several photos from a user in one request
+export async function removePhotosFromUser(userId: number, photoIds: number[]) {
+    await httpPostNoContent("/api/user_photo/batch/remove", photoIds.map((photoId) => ({ userId, photoId })));
+}
+
 // Remove photo from user
 export function removePhotoFromUser(userId: number, photoId: number) {
     return httpDelete(`/api/user_photo/${userId}/${photoId}`);
@@ -1,9 +1,9 @@
-import { httpGet, httpPost, httpDelete } from "./httpClient";
+import { httpGet, httpGetAllPages, httpPost, httpPostNoContent, httpDelete } from "./httpClient";
 import { UserPoem } from "../models/UserPoem";
 
 // Get all user-poem associations
 export async function fetchUserPoemList() {
-    const data = await httpGet("/api/user_poem/list");
+    const data = await httpGetAllPages("/api/user_poem/list");
     return UserPoem.fromJsonArray(data);
 }
 
@@ -13,6 +13,16 @@ export async function addPoemToUser(userId: number, poemId: number) {
     return UserPoem.fromJson(data);
 }
 
+// Add several poems to a user in one request; poems already collected are ignored
+export async function addPoemsToUser(userId: number, poemIds: number[]) {
+    await httpPostNoContent("/api/user_poem/batch/add", poemIds.map((poemId) => ({ userId, poemId })));
+}
+
+// Remove several poems from a user in one request
+export async function removePoemsFromUser(userId: number, poemIds: number[]) {
+    await httpPostNoContent("/api/user_poem/batch/remove", poemIds.map((poemId) => ({ userId, poemId })));
+}
+
 // Remove poem from user
 export function removePoemFromUser(userId: number, poemId: number) {
     return httpDelete(`/api/user_poem/${userId}/${poemId}`);
@@ -1,9 +1,8 @@
 import React from "react";
 import { User } from "../models/User";
 import GlassCard from "./GlassCard";
-import { getUserPhotos } from "../api/userPhotoApi";
+import { fetchUserDashboard } from "../api/userApi";
 import { Photo } from "../models/Photo";
-import { UserPhoto } from "../models/UserPhoto";
 import { useState, useEffect } from "react";
 
 type Props = {
@@ -13,7 +12,7 @@ type Props = {
 
 
 export default function RightSideBar({ className, selectedUser }: Props) {
-    const [photos, setPhotos] = useState<UserPhoto[]>([]);
+    const [photos, setPhotos] = useState<Photo[]>([]);
     const [loading, setLoading] = useState(false);
 
     useEffect(() => {
@@ -22,8 +21,8 @@ export default function RightSideBar({ className, selectedUser }: Props) {
             return;
         }
         setLoading(true);
-        getUserPhotos(selectedUser.id)
-            .then(setPhotos)
+        fetchUserDashboard(selectedUser.id)
+            .then(dashboard => setPhotos(dashboard.photos))
             .finally(() => setLoading(false));
     }, [selectedUser]);
 
@@ -36,13 +35,13 @@ export default function RightSideBar({ className, selectedUser }: Props) {
 
             {selectedUser && (
                 <>
-                    <h2 className="text-lg font-bold mb-4">Your Photos</h2>
+                    <h2 className="text-lg font-bold mb-4">Your Photos ({photos.length})</h2>
                     {loading && <p className="text-gray-400">Loading...</p>}
                     {!loading &&
                         photos.map(photo => (
                             <img
-                                key={photo.id.photoId}
-                                src={`/api/photo/${photo.id.photoId}/image`}
+                                key={photo.id}
+                                src={`/api/photo/${photo.id}/thumbnail?size=medium`}
                                 alt={"User Photo"}
                                 className="w-full h-40 object-cover rounded-lg mb-2"
                             />
@@ -1,15 +1,26 @@
 /**
- * Photo entity model
+ * A main color of a photo and the share of the image it covers (0-1)
+ */
+export interface Swatch {
+    color: string;
+    weight: number;
+}
+
+/**
+ * Photo metadata model (image bytes are served by imageUrl)
  */
 export class Photo {
     constructor(
         public id: number,
-        public image: ArrayBuffer,
-        public representativeColor: string | null
+        public representativeColor: string | null,
+        public width: number | null,
+        public height: number | null,
+        public imageUrl: string,
+        public palette: Swatch[] = []
     ) {}
 
     static fromJson(json: any): Photo {
-        return new Photo(json.id, json.image, json.representativeColor);
+        return new Photo(json.id, json.representativeColor, json.width, json.height, json.imageUrl, json.palette ?? []);
     }
 
     static fromJsonArray(jsonArray: any[]): Photo[] {
@@ -19,8 +30,11 @@ export class Photo {
     toJson() {
         return {
             id: this.id,
-            image: this.image,
-            representativeColor: this.representativeColor
+            representativeColor: this.representativeColor,
+            width: this.width,
+            height: this.height,
+            imageUrl: this.imageUrl,
+            palette: this.palette
         };
     }
 }
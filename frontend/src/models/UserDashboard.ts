@@ -0,0 +1,26 @@
+import { Photo } from "./Photo";
+
+/**
+ * User with collected photos and poems (metadata only)
+ */
+export class UserDashboard {
+    constructor(
+        public id: number,
+        public username: string,
+        public photos: Photo[],
+        public poems: { id: number; title: string }[],
+        public photoCount: number,
+        public poemCount: number
+    ) {}
+
+    static fromJson(json: any): UserDashboard {
+        return new UserDashboard(
+            json.id,
+            json.username,
+            Photo.fromJsonArray(json.photos),
+            json.poems,
+            json.photoCount,
+            json.poemCount
+        );
+    }
+}
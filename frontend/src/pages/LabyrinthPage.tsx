@@ -1,9 +1,9 @@
-import { useEffect, useMemo, useState, useCallback } from "react";
+import { useEffect, useMemo, useState, useCallback, useRef } from "react";
 import { Card, CardBody, CardFooter, Button, Modal } from "@heroui/react";
 import { User } from "../models/User";
 import { Photo } from "../models/Photo";
-import { addPhotoToUser } from "../api/userPhotoApi";
-import { getRandomUncollectedPhoto } from "../api/photoApi";
+import { addUserPhotos } from "../api/userPhotoApi";
+import { startLabyrinthSession, endLabyrinthSession } from "../api/labyrinthApi";
 import GlassCard from "../components/GlassCard";
 import MyButton from "../components/MyButton";
 import RightSideBar from "../components/RightSideBar";
@@ -22,6 +22,7 @@ const SPECIAL_CELL_PROBABILITY = 0.1;
 const PHOTO_CELL_PROBABILITY = 0.7;
 const FEAR_GHOST_PROBABILITY = 0.3;
 const VISION_RADIUS = 4;
+const COLLECT_FLUSH_INTERVAL_MS = 5000;
 
 // ==============================
 // COLORS
@@ -441,22 +442,56 @@ export default function LabyrinthPage({ selectedUser }: Props) {
     const [loading, setLoading] = useState(true);
     const [fightFearGhost, setFightFearGhost] = useState(false);
 
+    // Collected photos are saved in batches instead of one request per photo
+    const pendingCollected = useRef<{ userId: number; photoId: number }[]>([]);
+    const flushCollected = useCallback(() => {
+        if (pendingCollected.current.length === 0) return;
+        const links = pendingCollected.current;
+        pendingCollected.current = [];
+        addUserPhotos(links).catch((err: any) => {
+            console.error("Error collecting photos:", err);
+            // Sent again with the next batch
+            pendingCollected.current = [...links, ...pendingCollected.current];
+        });
+    }, []);
+
+    useEffect(() => {
+        const timer = window.setInterval(flushCollected, COLLECT_FLUSH_INTERVAL_MS);
+        // Hiding the tab is the last reliable moment before it is closed or discarded
+        const flushWhenHidden = () => {
+            if (document.visibilityState === "hidden") flushCollected();
+        };
+        document.addEventListener("visibilitychange", flushWhenHidden);
+        window.addEventListener("pagehide", flushCollected);
+        return () => {
+            window.clearInterval(timer);
+            document.removeEventListener("visibilitychange", flushWhenHidden);
+            window.removeEventListener("pagehide", flushCollected);
+            flushCollected();
+        };
+    }, [flushCollected]);
+
 
 
     // Initialize labyrinth and load photos for photo cells
     useEffect(() => {
+        let sessionId: string | null = null;
         const initializeGame = async () => {
             const newLabyrinth = new Labyrinth(ROWS, COLS);
 
             if (selectedUser) {
-                // Load random uncollected photos for each photo cell
-                const excludedPhotoIds: number[] = [];
-                for (const specialCell of newLabyrinth.photoCells) {
-                    const photo = await getRandomUncollectedPhoto(selectedUser.id, excludedPhotoIds);
-                    if (photo) {
-                        specialCell.photo = photo;
-                        excludedPhotoIds.push(photo.id);
-                    }
+                // One session deals distinct uncollected photos for all the photo cells
+                try {
+                    const session = await startLabyrinthSession(selectedUser.id, newLabyrinth.photoCells.length);
+                    sessionId = session.sessionId;
+                    // The server warms the large images of the first photos it
+                    // returns: give them to the cells nearest the start (0, 0)
+                    const byDistance = [...newLabyrinth.photoCells].sort((a, b) => (a.row + a.col) - (b.row + b.col));
+                    byDistance.forEach((specialCell, i) => {
+                        specialCell.photo = session.photos[i] ?? null;
+                    });
+                } catch (err: any) {
+                    console.error("Error starting labyrinth session:", err);
                 }
 
                 // Propagate colors after all photos are assigned
@@ -468,6 +503,9 @@ export default function LabyrinthPage({ selectedUser }: Props) {
         };
 
         initializeGame();
+        return () => {
+            if (sessionId) endLabyrinthSession(sessionId).catch(() => {});
+        };
     }, [selectedUser]);
 
     const moveCallback = useCallback(
@@ -525,10 +563,8 @@ export default function LabyrinthPage({ selectedUser }: Props) {
                 && target.photo
                 && selectedUser) {
                 setOverlayImg(target.photo);
-                // Mark photo as collected
-                addPhotoToUser(selectedUser.id, target.photo.id).catch((err: any) =>
-                    console.error("Error collecting photo:", err)
-                );
+                // Mark photo as collected (saved with the next batch)
+                pendingCollected.current.push({ userId: selectedUser.id, photoId: target.photo.id });
                 target.photo = null; // prevent recollection
                 target.type = "normal"; // prevent retriggering
             }
@@ -698,7 +734,7 @@ export default function LabyrinthPage({ selectedUser }: Props) {
                                 {overlayImg && (
                                     <div className="relative rounded-lg overflow-hidden shadow-lg border-2 border-yellow-500/50">
                                         <img
-                                            src={`/api/photo/${overlayImg.id}/image`}
+                                            src={`/api/photo/${overlayImg.id}/thumbnail?size=large`}
                                             alt="Foto raccolta"
                                             className="w-full h-auto object-cover max-h-96"
                                         />